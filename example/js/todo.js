@@ -68,10 +68,8 @@ async function addTodo(title) {
 
 async function toggleTodo(id) {
 	try {
-		const response = await fetch('/api/todos', {
-			method: 'PUT',
-			headers: { 'Content-Type': 'application/x-www-form-urlencoded' },
-			body: new URLSearchParams({ id: id.toString() })
+		const response = await fetch(`/api/todos/${id}`, {
+			method: 'PUT'
 		});
 
 		if (response.ok) {
@@ -93,10 +91,8 @@ async function deleteTodo(id) {
 	if (!confirm('Are you sure you want to delete this todo?')) return;
 
 	try {
-		const response = await fetch('/api/todos', {
-			method: 'DELETE',
-			headers: { 'Content-Type': 'application/x-www-form-urlencoded' },
-			body: new URLSearchParams({ id: id.toString() })
+		const response = await fetch(`/api/todos/${id}`, {
+			method: 'DELETE'
 		});
 
 		if (response.ok) {
@@ -3,6 +3,7 @@ package com.hindbiswas.server;
 import com.hindbiswas.server.core.WebServer;
 import com.hindbiswas.server.http.Response;
 import com.hindbiswas.server.logger.Logger;
+import com.hindbiswas.server.routing.BatchFilter;
 import com.hindbiswas.server.routing.HybridRouter;
 import com.hindbiswas.server.session.Session;
 import com.hindbiswas.server.session.SessionConfig;
@@ -157,14 +158,24 @@ public class App {
             return response;
         });
 
+        // ==================== Filters ====================
+
+        // Several API calls in one round trip; each call still passes the filters below
+        router.use(new BatchFilter("/api/batch"));
+
+        // The todo API requires a logged-in user
+        router.use((request, webRoot, next) -> {
+            if (request.path.startsWith("/api/") && getLoggedInUser(request) == null) {
+                return Response.json("{\"error\": \"Not authenticated\"}", 401).toHttpResponse();
+            }
+            return next.resolve(request, webRoot);
+        });
+
         // ==================== Todo CRUD Routes ====================
 
         // Get all todos for logged-in user
         router.get("/api/todos", request -> {
             String username = getLoggedInUser(request);
-            if (username == null) {
-                return Response.json("{\"error\": \"Not authenticated\"}", 401);
-            }
 
             List<Todo> todos = userTodos.getOrDefault(username, new ArrayList<>());
             return Response.json(todosToJson(todos));
@@ -173,9 +184,6 @@ public class App {
         // Create new todo
         router.post("/api/todos", request -> {
             String username = getLoggedInUser(request);
-            if (username == null) {
-                return Response.json("{\"error\": \"Not authenticated\"}", 401);
-            }
 
             String title = request.body.get("title");
             if (title == null || title.trim().isEmpty()) {
@@ -190,63 +198,39 @@ public class App {
         });
 
         // Toggle todo completion
-        router.put("/api/todos", request -> {
+        router.put("/api/todos/{id:int}", request -> {
             String username = getLoggedInUser(request);
-            if (username == null) {
-                return Response.json("{\"error\": \"Not authenticated\"}", 401);
-            }
-
-            String idStr = request.body.get("id");
-            if (idStr == null) {
-                return Response.json("{\"error\": \"Todo ID is required\"}", 400);
-            }
 
-            try {
-                int id = Integer.parseInt(idStr);
-                List<Todo> todos = userTodos.get(username);
+            int id = request.getIntPathParam("id");
+            List<Todo> todos = userTodos.get(username);
 
-                if (todos != null) {
-                    for (Todo todo : todos) {
-                        if (todo.id == id) {
-                            todo.completed = !todo.completed;
-                            return Response.json(todoToJson(todo));
-                        }
+            if (todos != null) {
+                for (Todo todo : todos) {
+                    if (todo.id == id) {
+                        todo.completed = !todo.completed;
+                        return Response.json(todoToJson(todo));
                     }
                 }
-
-                return Response.json("{\"error\": \"Todo not found\"}", 404);
-            } catch (NumberFormatException e) {
-                return Response.json("{\"error\": \"Invalid todo ID\"}", 400);
             }
+
+            return Response.json("{\"error\": \"Todo not found\"}", 404);
         });
 
         // Delete todo
-        router.delete("/api/todos", request -> {
+        router.delete("/api/todos/{id:int}", request -> {
             String username = getLoggedInUser(request);
-            if (username == null) {
-                return Response.json("{\"error\": \"Not authenticated\"}", 401);
-            }
 
-            String idStr = request.body.get("id");
-            if (idStr == null) {
-                return Response.json("{\"error\": \"Todo ID is required\"}", 400);
-            }
+            int id = request.getIntPathParam("id");
+            List<Todo> todos = userTodos.get(username);
 
-            try {
-                int id = Integer.parseInt(idStr);
-                List<Todo> todos = userTodos.get(username);
-
-                if (todos != null) {
-                    boolean removed = todos.removeIf(todo -> todo.id == id);
-                    if (removed) {
-                        return Response.json("{\"success\": true, \"message\": \"Todo deleted\"}");
-                    }
+            if (todos != null) {
+                boolean removed = todos.removeIf(todo -> todo.id == id);
+                if (removed) {
+                    return Response.json("{\"success\": true, \"message\": \"Todo deleted\"}");
                 }
-
-                return Response.json("{\"error\": \"Todo not found\"}", 404);
-            } catch (NumberFormatException e) {
-                return Response.json("{\"error\": \"Invalid todo ID\"}", 400);
             }
+
+            return Response.json("{\"error\": \"Todo not found\"}", 404);
         });
 
         server.setRouter(router);
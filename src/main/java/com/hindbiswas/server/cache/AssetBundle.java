@@ -0,0 +1,267 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.http.HttpUtils;
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A read-only pack of a web root's static files in a single file, served from
+ * one memory mapping. Avoids an open, stat and read per file on deployments
+ * with many small assets.
+ *
+ * <p>
+ * The file holds every body back to back, followed by an index of path,
+ * MIME type, validators and offsets, the directory index mappings, and a
+ * fixed-size trailer pointing at the index. Compressible files carry a gzip
+ * variant packed next to them. Entity headers and ETags are built once when
+ * the bundle is opened, so serving an asset writes two slices of the mapping.
+ * </p>
+ *
+ * <p>
+ * A bundle is a snapshot: edits to the web root after packing are not seen
+ * until it is packed again. JHP templates are never packed.
+ * </p>
+ */
+public class AssetBundle implements Closeable {
+    private static final int MAGIC = 0x4A575342; // "JWSB"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private static final long COMPRESSION_MIN_BYTES = 1024;
+
+    /**
+     * A packed file and its optional gzip variant.
+     *
+     * @param identity the unencoded file
+     * @param gzip     the gzip variant, or null if it has none
+     */
+    public record Asset(CachedFile identity, CachedFile gzip) {
+    }
+
+    private final Arena arena;
+    private final Map<String, Asset> assets;
+    private final long size;
+
+    private AssetBundle(Arena arena, Map<String, Asset> assets, long size) {
+        this.arena = arena;
+        this.assets = assets;
+        this.size = size;
+    }
+
+    /**
+     * Packs the static files of a web root into a bundle file.
+     *
+     * @param webRoot The web root to pack
+     * @param bundle  The bundle file to write
+     * @throws IOException If the tree cannot be read or the bundle written
+     */
+    public static void pack(File webRoot, File bundle) throws IOException {
+        StaticIndex index = StaticIndex.scan(webRoot);
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(indexBytes);
+        String bundlePath = bundle.getCanonicalPath();
+        Map<String, String> directories = new HashMap<>();
+        int count = 0;
+        long position = 0; // DataOutputStream.size() is an int
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(bundle), 64 * 1024))) {
+            for (StaticIndex.Asset asset : index.getAssets()) {
+                if ("application/x-jhp".equals(asset.mimeType())
+                        || asset.file().getPath().equals(bundlePath)) {
+                    continue;
+                }
+
+                byte[] data = Files.readAllBytes(asset.file().toPath());
+                long offset = position;
+                out.write(data);
+                position += data.length;
+
+                long gzipOffset = -1;
+                int gzipLength = -1;
+                byte[] compressed = compress(asset, data);
+                if (compressed != null) {
+                    gzipOffset = position;
+                    gzipLength = compressed.length;
+                    out.write(compressed);
+                    position += compressed.length;
+                }
+
+                indexOut.writeUTF(asset.relativePath());
+                indexOut.writeUTF(asset.mimeType());
+                indexOut.writeLong(asset.lastModified());
+                indexOut.writeLong(offset);
+                indexOut.writeInt(data.length);
+                indexOut.writeLong(gzipOffset);
+                indexOut.writeInt(gzipLength);
+                count++;
+
+                // Directories whose index.html is not shadowed by an index.jhp
+                String path = asset.relativePath();
+                if (path.equals("index.html") || path.endsWith("/index.html")) {
+                    String dir = path.substring(0, Math.max(0, path.length() - "/index.html".length()));
+                    if (index.lookup(dir) == asset) {
+                        directories.put(dir, path);
+                    }
+                }
+            }
+
+            long indexOffset = position;
+            out.writeInt(count);
+            indexBytes.writeTo(out);
+            out.writeInt(directories.size());
+            for (Map.Entry<String, String> directory : directories.entrySet()) {
+                out.writeUTF(directory.getKey());
+                out.writeUTF(directory.getValue());
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        Logger.log(String.format("Packed %d assets from %s into %s (%d bytes)", count, webRoot, bundle,
+                bundle.length()));
+    }
+
+    /**
+     * Returns the gzip variant to pack: a fresh sibling {@code .gz} file if
+     * there is one, otherwise the data compressed now. Null if the file is not
+     * compressible or would not shrink.
+     */
+    private static byte[] compress(StaticIndex.Asset asset, byte[] data) throws IOException {
+        if (!HttpUtils.isCompressible(asset.mimeType()) || data.length < COMPRESSION_MIN_BYTES) {
+            return null;
+        }
+
+        File sibling = new File(asset.file().getPath() + ".gz");
+        byte[] compressed;
+        if (sibling.isFile() && sibling.lastModified() >= asset.lastModified()) {
+            compressed = Files.readAllBytes(sibling.toPath());
+        } else {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(buffer)) {
+                gz.write(data);
+            }
+            compressed = buffer.toByteArray();
+        }
+        return (compressed.length < data.length) ? compressed : null;
+    }
+
+    /**
+     * Packs a web root from the command line, as a build step:
+     * {@code AssetBundle <webRoot> <bundleFile>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AssetBundle <webRoot> <bundleFile>");
+            System.exit(2);
+        }
+        pack(new File(args[0]), new File(args[1]));
+    }
+
+    /**
+     * Maps a bundle file and reads its index.
+     *
+     * @param bundle The bundle file written by {@link #pack(File, File)}
+     * @return The opened bundle
+     * @throws IOException If the file cannot be mapped or is not a bundle
+     */
+    public static AssetBundle open(File bundle) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(bundle.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TRAILER_BYTES) {
+                throw new IOException("Not an asset bundle: " + bundle);
+            }
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+
+            DataInputStream trailer = new DataInputStream(Channels.newInputStream(
+                    channel.position(size - TRAILER_BYTES)));
+            long indexOffset = trailer.readLong();
+            if (trailer.readInt() != MAGIC || trailer.readInt() != VERSION) {
+                throw new IOException("Not an asset bundle or unsupported version: " + bundle);
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(indexOffset)), 64 * 1024));
+            int count = in.readInt();
+            Map<String, Asset> assets = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String mimeType = in.readUTF();
+                long lastModified = in.readLong();
+                long offset = in.readLong();
+                int length = in.readInt();
+                long gzipOffset = in.readLong();
+                int gzipLength = in.readInt();
+
+                CachedFile identity = new CachedFile(path, lastModified, mimeType,
+                        segment.asSlice(offset, length).asByteBuffer());
+                CachedFile gzip = (gzipOffset < 0) ? null
+                        : new CachedFile(path, lastModified, length, mimeType, "gzip",
+                                segment.asSlice(gzipOffset, gzipLength).asByteBuffer());
+                assets.put(path, new Asset(identity, gzip));
+            }
+
+            // Directories resolve to their index.html
+            int directories = in.readInt();
+            for (int i = 0; i < directories; i++) {
+                String dir = in.readUTF();
+                assets.put(dir, assets.get(in.readUTF()));
+            }
+
+            return new AssetBundle(arena, assets, size);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up the asset for a request path.
+     *
+     * @param requestPath The request path, still URL-encoded
+     * @return The asset, or null if the path is not in the bundle
+     */
+    public Asset resolve(String requestPath) {
+        String key = StaticIndex.toKey(requestPath);
+        return (key != null) ? assets.get(key) : null;
+    }
+
+    public int getAssetCount() {
+        return assets.size();
+    }
+
+    /**
+     * Returns the size of the bundle file.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Unmaps the bundle. Must not be called while responses may still be
+     * writing from it.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,144 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.http.HttpUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An immutable snapshot of a static file held by {@link StaticFileCache}.
+ * Keeps the body together with its pre-encoded entity headers so a cache hit
+ * only has to write bytes.
+ */
+public class CachedFile {
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final long sourceLength;
+    private final String mimeType;
+    private final String encoding;
+    private final String etag;
+    private final byte[] headerBytes;
+    private final ByteBuffer body;
+
+    /** Last time the entry was checked against the file on disk */
+    private volatile long lastValidated;
+
+    CachedFile(String path, long lastModified, String mimeType, ByteBuffer body) {
+        this(path, lastModified, body.remaining(), mimeType, null, body);
+    }
+
+    /**
+     * Creates an entry for an encoded variant (e.g. gzip) of a file. Validators
+     * are derived from the source file so the variant is invalidated with it.
+     */
+    CachedFile(String path, long lastModified, long sourceLength, String mimeType, String encoding,
+            ByteBuffer body) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = body.remaining();
+        this.sourceLength = sourceLength;
+        this.mimeType = mimeType;
+        this.encoding = encoding;
+        this.body = body;
+
+        String identityTag = HttpUtils.buildETag(lastModified, sourceLength);
+        this.etag = (encoding == null) ? identityTag : HttpUtils.variantETag(identityTag, encoding);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Content-Type: ").append(HttpUtils.formatContentType(mimeType)).append("\r\n");
+        sb.append("Content-Length: ").append(length).append("\r\n");
+        sb.append("ETag: ").append(etag).append("\r\n");
+        sb.append("Last-Modified: ").append(HttpUtils.formatHttpDate(lastModified)).append("\r\n");
+        if (encoding == null) {
+            sb.append("Accept-Ranges: bytes\r\n");
+        } else {
+            sb.append("Content-Encoding: ").append(encoding).append("\r\n");
+        }
+        this.headerBytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        this.lastValidated = System.currentTimeMillis();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Returns the content coding of the body, or null for the identity variant.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the size of the file on disk the entry was built from.
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Returns the entity tag derived from the file's modification time and size.
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * Returns the pre-encoded entity header lines: Content-Type,
+     * Content-Length, ETag, Last-Modified and either Accept-Ranges or
+     * Content-Encoding.
+     */
+    public byte[] getHeaderBytes() {
+        return headerBytes;
+    }
+
+    /**
+     * Returns an independent view of the body. Each caller gets its own
+     * position so concurrent writes do not interfere; the contents are shared
+     * and must not be modified.
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    /**
+     * Takes a reference on the entry's body before it is handed to a response.
+     * Heap-backed entries need no bookkeeping and always succeed.
+     *
+     * @return true if the body is still valid and may be used
+     */
+    public boolean acquire() {
+        return true;
+    }
+
+    /**
+     * Releases a reference taken by {@link #acquire()}.
+     */
+    public void release() {
+    }
+
+    boolean isStale(long now, long revalidateMillis) {
+        return now - lastValidated >= revalidateMillis;
+    }
+
+    void markValidated(long now) {
+        this.lastValidated = now;
+    }
+
+    boolean matches(long lastModified, long length) {
+        return this.lastModified == lastModified && this.sourceLength == length;
+    }
+}
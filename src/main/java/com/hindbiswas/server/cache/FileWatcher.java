@@ -0,0 +1,136 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Watches directory trees for changes and notifies listeners with the path
+ * that changed. New subdirectories are watched as they appear.
+ *
+ * <p>
+ * When the OS drops events (overflow), listeners are notified with the
+ * watched directory itself, which should be treated as "anything below here
+ * may have changed".
+ * </p>
+ */
+public class FileWatcher implements Closeable {
+    private final WatchService service;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final List<Consumer<Path>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    public FileWatcher() throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "static-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Starts watching a directory and every directory below it.
+     *
+     * @param root The directory tree to watch
+     * @throws IOException If the tree cannot be walked or registered
+     */
+    public void watch(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Adds a listener called, on the watcher thread, with each changed path.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(Consumer<Path> listener) {
+        listeners.add(listener);
+    }
+
+    private void register(Path dir) throws IOException {
+        WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, dir);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path dir = directories.get(key);
+                if (dir == null) {
+                    key.cancel();
+                    continue;
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        notifyListeners(dir);
+                        continue;
+                    }
+
+                    Path changed = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        try {
+                            watch(changed);
+                        } catch (IOException e) {
+                            Logger.err("Failed to watch " + changed + ": " + e.getMessage());
+                        }
+                    }
+                    notifyListeners(changed);
+                }
+
+                if (!key.reset()) {
+                    directories.remove(key); // Directory is gone
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher closed
+        }
+    }
+
+    private void notifyListeners(Path changed) {
+        for (Consumer<Path> listener : listeners) {
+            try {
+                listener.accept(changed);
+            } catch (Exception e) {
+                Logger.err("File watch listener failed for " + changed + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of directories currently watched.
+     */
+    public int getWatchedDirectoryCount() {
+        return directories.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,76 @@
+package com.hindbiswas.server.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link CachedFile} whose body is a read-only memory mapping of the file.
+ *
+ * <p>
+ * The mapping is reference counted: the cache holds one reference while the
+ * entry is live and every response holds one while writing. When the file
+ * changes or the entry is evicted the cache drops its reference, and the
+ * mapping is unmapped as soon as the last in-flight response releases it.
+ * </p>
+ */
+public class MappedFile extends CachedFile {
+    private final Arena arena;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private MappedFile(String path, long lastModified, String mimeType, Arena arena, MemorySegment segment) {
+        super(path, lastModified, mimeType, segment.asByteBuffer());
+        this.arena = arena;
+    }
+
+    /**
+     * Maps a file into memory.
+     *
+     * @param resource The file to map
+     * @param mimeType MIME type to encode into the cached headers
+     * @return The mapped entry, holding the cache's reference
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    static MappedFile map(File resource, String mimeType) throws IOException {
+        long lastModified = resource.lastModified();
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(resource.toPath(), StandardOpenOption.READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            return new MappedFile(resource.getPath(), lastModified, mimeType, arena, segment);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean acquire() {
+        while (true) {
+            int current = refs.get();
+            if (current == 0) {
+                return false; // Already unmapped
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        if (refs.decrementAndGet() == 0) {
+            arena.close();
+        }
+    }
+
+    /**
+     * Returns the number of outstanding references, including the cache's own.
+     */
+    public int getReferenceCount() {
+        return refs.get();
+    }
+}
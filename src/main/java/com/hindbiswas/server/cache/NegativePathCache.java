@@ -0,0 +1,88 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.http.ResolvedPath;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded LRU cache of request paths that resolved to nothing, so repeated
+ * requests for missing files (scanners, broken links) skip the filesystem.
+ *
+ * <p>
+ * Entries expire after a short TTL and are also dropped whenever the
+ * {@link FileWatcher} reports a change, so a newly created file is served
+ * immediately.
+ * </p>
+ */
+public class NegativePathCache {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+
+    private record Entry(ResolvedPath resolved, long expiresAt) {
+    }
+
+    public NegativePathCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the cached miss for a key if it has not expired.
+     *
+     * @param key The cache key
+     * @param now Current time in milliseconds
+     * @return The missing resolution, or null if unknown or expired
+     */
+    public ResolvedPath get(String key, long now) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= now) {
+                entries.remove(key);
+                return null;
+            }
+            hits.increment();
+            return entry.resolved();
+        }
+    }
+
+    /**
+     * Records a missing resolution, evicting the least recently requested
+     * miss if the cache is full.
+     *
+     * @param key      The cache key
+     * @param resolved The resolution of the missing path
+     * @param now      Current time in milliseconds
+     */
+    public void put(String key, ResolvedPath resolved, long now) {
+        synchronized (entries) {
+            entries.put(key, new Entry(resolved, now + ttlMillis));
+            if (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+}
@@ -0,0 +1,108 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.http.ResolvedPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches how raw request paths resolve onto the web root, so repeat requests
+ * skip URL decoding, canonicalization, index lookup and existence checks.
+ *
+ * <p>
+ * Servable resolutions are kept until the web root changes. Missing files
+ * and forbidden paths (outside the web root) go to an optional, bounded
+ * {@link NegativePathCache} with a short TTL, so a client sending endless
+ * unique {@code ../} paths cannot flush the servable working set.
+ * Any change reported by the {@link FileWatcher} clears both, since a single
+ * create or delete can change how a directory's index resolves.
+ * </p>
+ */
+public class ResolvedPathCache {
+    private final Map<String, ResolvedPath> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    /** Paths that resolved to missing or forbidden files, or null to resolve them each time */
+    private final NegativePathCache missing;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ResolvedPathCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    public ResolvedPathCache(int maxEntries, NegativePathCache missing) {
+        this.maxEntries = maxEntries;
+        this.missing = missing;
+    }
+
+    /**
+     * Resolves a request path, from the cache when possible.
+     *
+     * @param requestPath the request path, still URL-encoded
+     * @param webRoot     the base directory for serving files
+     * @return the resolution
+     * @throws IOException if the path cannot be decoded or canonicalized
+     */
+    public ResolvedPath resolve(String requestPath, File webRoot) throws IOException {
+        String key = webRoot.getPath() + '\0' + requestPath;
+        ResolvedPath resolved = entries.get(key);
+        if (resolved != null) {
+            hits.increment();
+            return resolved;
+        }
+
+        long now = System.currentTimeMillis();
+        if (missing != null) {
+            resolved = missing.get(key, now);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+
+        misses.increment();
+        resolved = ResolvedPath.resolve(requestPath, webRoot);
+        if (resolved.exists() && resolved.underWebRoot()) {
+            if (entries.size() >= maxEntries) {
+                entries.clear(); // Crude bound; the working set refills quickly
+            }
+            entries.put(key, resolved);
+        } else if (missing != null) {
+            missing.put(key, resolved, now);
+        }
+        return resolved;
+    }
+
+    /**
+     * Drops every cached resolution.
+     */
+    public void clear() {
+        entries.clear();
+        if (missing != null) {
+            missing.clear();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the cache of missing paths, or null if misses are not cached.
+     */
+    public NegativePathCache getMissing() {
+        return missing;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,269 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.handler.RouteHandler;
+import com.hindbiswas.server.http.HttpMethod;
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
+import com.hindbiswas.server.http.Response;
+import com.hindbiswas.server.logger.Logger;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A route handler that caches the responses of another handler, keyed by
+ * path, query and the configured headers.
+ *
+ * <p>
+ * Concurrent misses for the same key are collapsed into one call of the
+ * wrapped handler; the other requests wait for its response. Expired
+ * responses within the stale window are served while a single background
+ * call refreshes them. That call gets a detached copy of the request, without
+ * its session, cookies or credentials (unless they are vary headers), and at
+ * most {@link RouteCacheConfig#setMaxRefreshes(int)} run at once.
+ * </p>
+ *
+ * <p>
+ * Only GET and HEAD requests are cached, and only synchronous 200 responses
+ * without cookies are stored, so per-user responses should not use this cache
+ * unless the user is part of the key (e.g. via a vary header).
+ * </p>
+ */
+public class RouteCache implements RouteHandler {
+    private final RouteHandler handler;
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final int maxEntries;
+    private final String[] varyHeaders;
+    private final Semaphore refreshes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private record Entry(Response response, long freshUntil, long staleUntil) {
+    }
+
+    public RouteCache(RouteHandler handler, RouteCacheConfig config) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null.");
+        }
+        this.handler = handler;
+        this.ttlMillis = config.getTtlMillis();
+        this.staleMillis = config.getStaleMillis();
+        this.maxEntries = config.getMaxEntries();
+        this.varyHeaders = config.getVaryHeaders();
+        this.refreshes = new Semaphore(Math.max(0, config.getMaxRefreshes()));
+    }
+
+    @Override
+    public Response handle(Request request) {
+        HttpMethod method = request.getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return handler.handle(request);
+        }
+
+        String key = keyOf(request);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && now < entry.freshUntil()) {
+            hits.increment();
+            return entry.response();
+        }
+        if (entry != null && now < entry.staleUntil()) {
+            staleHits.increment();
+            refresh(key, request);
+            return entry.response();
+        }
+
+        misses.increment();
+        return load(key, request);
+    }
+
+    /**
+     * Calls the handler for a missing key, or waits for the call another
+     * request already started. If that call ends because its request was
+     * cancelled, the waiters start over and one of them makes the call.
+     */
+    private Response load(String key, Request request) {
+        CompletableFuture<Response> flight = new CompletableFuture<>();
+        CompletableFuture<Response> existing;
+        while ((existing = inFlight.putIfAbsent(key, flight)) != null) {
+            coalesced.increment();
+            Response response;
+            try {
+                response = await(existing);
+            } catch (RequestCancelledException e) {
+                // The leader's request was cancelled, not this one: try again
+                request.ensureActive();
+                continue;
+            }
+            // Responses setting cookies belong to the request that made them
+            return response.getCookies().isEmpty() ? response : handler.handle(request);
+        }
+
+        try {
+            Response response = handler.handle(request);
+            store(key, response);
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Refreshes a stale key in the background unless a call for it is
+     * already running or no refresh slot is free.
+     */
+    private void refresh(String key, Request request) {
+        if (!refreshes.tryAcquire()) {
+            return;
+        }
+        CompletableFuture<Response> flight = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, flight) != null) {
+            refreshes.release();
+            return;
+        }
+
+        // The request may be finished, and its session saved, before the refresh runs
+        Request detached = request.detached(detachedHeaders(request));
+        try {
+            Thread.ofVirtual().name("route-cache-refresh").start(() -> {
+                try {
+                    Response response = detached.getContext().call(() -> handler.handle(detached));
+                    store(key, response);
+                    flight.complete(response);
+                } catch (RuntimeException e) {
+                    Logger.wrn("Route cache refresh failed for " + detached.path + ": " + e.getMessage());
+                    flight.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, flight);
+                    refreshes.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            refreshes.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a request's headers without those identifying the user, except
+     * those that are part of the key.
+     */
+    private Map<String, String> detachedHeaders(Request request) {
+        Map<String, String> headers = new HashMap<>(request.headers);
+        for (String name : new String[] { "cookie", "authorization" }) {
+            if (!isVaryHeader(name)) {
+                headers.remove(name);
+            }
+        }
+        return headers;
+    }
+
+    private boolean isVaryHeader(String name) {
+        for (String vary : varyHeaders) {
+            if (vary.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Response await(CompletableFuture<Response> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void store(String key, Response response) {
+        if (response == null || response.getStatusCode() != 200 || response.isAsync()
+                || !response.getCookies().isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, new Entry(response, now + ttlMillis, now + ttlMillis + staleMillis));
+            if (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Builds the cache key. Query names and values, and header values, are
+     * length-prefixed, since once decoded they may contain any separator.
+     */
+    private String keyOf(Request request) {
+        StringBuilder key = new StringBuilder(request.path);
+        for (Map.Entry<String, String> param : new TreeMap<>(request.params).entrySet()) {
+            appendField(key.append('?'), param.getKey());
+            appendField(key.append('='), param.getValue());
+        }
+        for (String name : varyHeaders) {
+            String value = request.headers.get(name);
+            appendField(key.append('\0').append(name).append(':'), value != null ? value : "");
+        }
+        return key.toString();
+    }
+
+    private static void appendField(StringBuilder key, String value) {
+        if (value == null) {
+            value = "";
+        }
+        key.append(value.length()).append('#').append(value);
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,88 @@
+package com.hindbiswas.server.cache;
+
+import java.util.Locale;
+
+/**
+ * Configuration for a route's response cache.
+ * Provides builder-style API for configuring cache behavior.
+ */
+public class RouteCacheConfig {
+    private long ttlMillis = 1000; // 1 second
+    private long staleMillis = 0;
+    private int maxEntries = 1024;
+    private int maxRefreshes = 4;
+    private String[] varyHeaders = new String[0];
+
+    public RouteCacheConfig() {
+    }
+
+    /**
+     * Sets how long a cached response is served without calling the handler.
+     */
+    public RouteCacheConfig setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        return this;
+    }
+
+    /**
+     * Sets how long after its TTL an expired response may still be served
+     * while a single background call refreshes it. Zero disables
+     * stale-while-revalidate.
+     */
+    public RouteCacheConfig setStaleMillis(long staleMillis) {
+        this.staleMillis = staleMillis;
+        return this;
+    }
+
+    /**
+     * Sets how many stale keys may be refreshed in the background at once.
+     * A stale key found while all refreshes are busy is served as is and
+     * refreshed by a later request.
+     */
+    public RouteCacheConfig setMaxRefreshes(int maxRefreshes) {
+        this.maxRefreshes = maxRefreshes;
+        return this;
+    }
+
+    /**
+     * Sets the number of distinct keys kept before evicting the least
+     * recently used response.
+     */
+    public RouteCacheConfig setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * Sets the request headers, besides path and query, that select a
+     * distinct response (e.g. {@code Accept-Language}).
+     */
+    public RouteCacheConfig setVaryHeaders(String... varyHeaders) {
+        String[] names = new String[varyHeaders.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = varyHeaders[i].trim().toLowerCase(Locale.ROOT);
+        }
+        this.varyHeaders = names;
+        return this;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public long getStaleMillis() {
+        return staleMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getMaxRefreshes() {
+        return maxRefreshes;
+    }
+
+    public String[] getVaryHeaders() {
+        return varyHeaders.clone();
+    }
+}
@@ -0,0 +1,247 @@
+package com.hindbiswas.server.cache;
+
+/**
+ * Configuration for the in-memory static file cache.
+ * Provides builder-style API for configuring cache behavior.
+ */
+public class StaticCacheConfig {
+    private boolean enabled = true;
+    private long maxBytes = 64L * 1024 * 1024; // 64MB
+    private long maxEntryBytes = 1024 * 1024; // 1MB
+    private boolean offHeap = false;
+    private long revalidateMillis = 1000; // 1 second
+    private boolean memoryMapping = false;
+    private long mappedThreshold = 256 * 1024; // 256KB
+    private int maxMappedFiles = 256;
+    private boolean compression = true;
+    private long compressionMinBytes = 1024; // 1KB
+    private boolean watchFiles = true;
+    private boolean pathCaching = true;
+    private int maxResolvedPaths = 10_000;
+    private boolean negativeCaching = true;
+    private int maxNegativeEntries = 4096;
+    private long negativeTtlMillis = 5000; // 5 seconds
+    private boolean indexing = false;
+
+    public StaticCacheConfig() {
+    }
+
+    public StaticCacheConfig setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Sets the total number of body bytes the cache may hold before evicting
+     * the least recently used entries.
+     */
+    public StaticCacheConfig setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Sets the largest file that will be admitted into the cache.
+     * Larger files are always read from disk.
+     */
+    public StaticCacheConfig setMaxEntryBytes(long maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        return this;
+    }
+
+    /**
+     * Stores cached bodies in direct (off-heap) buffers instead of byte arrays.
+     */
+    public StaticCacheConfig setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    /**
+     * Sets how long a cached entry is trusted before its modification time and
+     * size are checked against the file on disk again.
+     */
+    public StaticCacheConfig setRevalidateMillis(long revalidateMillis) {
+        this.revalidateMillis = revalidateMillis;
+        return this;
+    }
+
+    /**
+     * Serves large files from read-only memory mappings instead of reading
+     * them into the heap.
+     */
+    public StaticCacheConfig setMemoryMapping(boolean memoryMapping) {
+        this.memoryMapping = memoryMapping;
+        return this;
+    }
+
+    /**
+     * Sets the smallest file that is memory-mapped when mapping is enabled.
+     */
+    public StaticCacheConfig setMappedThreshold(long mappedThreshold) {
+        this.mappedThreshold = mappedThreshold;
+        return this;
+    }
+
+    /**
+     * Sets how many files may be mapped at once before the least recently
+     * used mapping is dropped.
+     */
+    public StaticCacheConfig setMaxMappedFiles(int maxMappedFiles) {
+        this.maxMappedFiles = maxMappedFiles;
+        return this;
+    }
+
+    /**
+     * Serves gzip variants of compressible files to clients that accept them.
+     * A sibling {@code .gz} file is used when present; otherwise the file is
+     * compressed once and the result cached alongside the original.
+     */
+    public StaticCacheConfig setCompression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Sets the smallest file worth compressing.
+     */
+    public StaticCacheConfig setCompressionMinBytes(long compressionMinBytes) {
+        this.compressionMinBytes = compressionMinBytes;
+        return this;
+    }
+
+    /**
+     * Watches the web root for changes so cached entries are dropped as soon
+     * as files are edited, created or deleted, instead of on revalidation.
+     */
+    public StaticCacheConfig setWatchFiles(boolean watchFiles) {
+        this.watchFiles = watchFiles;
+        return this;
+    }
+
+    /**
+     * Caches how request paths resolve to files, skipping canonicalization
+     * and existence checks on repeat requests. Only takes effect while the
+     * web root is watched, since the watcher is what invalidates it.
+     */
+    public StaticCacheConfig setPathCaching(boolean pathCaching) {
+        this.pathCaching = pathCaching;
+        return this;
+    }
+
+    /**
+     * Sets how many resolved request paths are remembered.
+     */
+    public StaticCacheConfig setMaxResolvedPaths(int maxResolvedPaths) {
+        this.maxResolvedPaths = maxResolvedPaths;
+        return this;
+    }
+
+    /**
+     * Remembers request paths that resolved to missing files or outside the
+     * web root, so repeated 404s and 403s skip the filesystem. Requires path
+     * caching.
+     */
+    public StaticCacheConfig setNegativeCaching(boolean negativeCaching) {
+        this.negativeCaching = negativeCaching;
+        return this;
+    }
+
+    /**
+     * Sets how many missing paths are remembered before the least recently
+     * requested one is dropped.
+     */
+    public StaticCacheConfig setMaxNegativeEntries(int maxNegativeEntries) {
+        this.maxNegativeEntries = maxNegativeEntries;
+        return this;
+    }
+
+    /**
+     * Sets how long a missing path is remembered if no change is reported.
+     */
+    public StaticCacheConfig setNegativeTtlMillis(long negativeTtlMillis) {
+        this.negativeTtlMillis = negativeTtlMillis;
+        return this;
+    }
+
+    /**
+     * Scans the web root at startup into an in-memory index of servable files,
+     * so lookups of known files never touch the filesystem. The index is kept
+     * current by the file watcher and a summary is logged after the scan.
+     * Requires file watching.
+     */
+    public StaticCacheConfig setIndexing(boolean indexing) {
+        this.indexing = indexing;
+        return this;
+    }
+
+    // Getters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public long getRevalidateMillis() {
+        return revalidateMillis;
+    }
+
+    public boolean isMemoryMapping() {
+        return memoryMapping;
+    }
+
+    public long getMappedThreshold() {
+        return mappedThreshold;
+    }
+
+    public int getMaxMappedFiles() {
+        return maxMappedFiles;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public long getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public boolean isWatchFiles() {
+        return watchFiles;
+    }
+
+    public boolean isPathCaching() {
+        return pathCaching;
+    }
+
+    public int getMaxResolvedPaths() {
+        return maxResolvedPaths;
+    }
+
+    public boolean isNegativeCaching() {
+        return negativeCaching;
+    }
+
+    public int getMaxNegativeEntries() {
+        return maxNegativeEntries;
+    }
+
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+
+    public boolean isIndexing() {
+        return indexing;
+    }
+}
@@ -0,0 +1,640 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.http.ResolvedPath;
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded LRU cache of static file contents keyed by canonical path.
+ *
+ * <p>
+ * The cache is bounded by the total number of body bytes it holds. Entries are
+ * revalidated against the file's modification time and size at most once per
+ * {@link StaticCacheConfig#getRevalidateMillis()}, so edits on disk are picked
+ * up without a restart.
+ * </p>
+ *
+ * <p>
+ * When memory mapping is enabled, files at or above
+ * {@link StaticCacheConfig#getMappedThreshold()} are served from a shared
+ * read-only mapping instead of being copied onto the heap. Mappings are
+ * bounded by count and backed by the OS page cache.
+ * </p>
+ *
+ * <p>
+ * Watched web roots push changes to the cache as they happen, and also back a
+ * {@link ResolvedPathCache} so request paths are canonicalized only once.
+ * With indexing enabled, a watched root is also scanned into a
+ * {@link StaticIndex}, which answers most lookups without touching the disk
+ * and is rebuilt shortly after the tree changes.
+ * </p>
+ */
+public class StaticFileCache {
+    private static volatile StaticFileCache instance = null;
+
+    /** Key suffix for gzip variants, which share the byte budget with originals */
+    private static final String GZIP_SUFFIX = "\0gzip";
+
+    private final StaticCacheConfig config;
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, CachedFile> mappedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /** Request path resolutions, or null if path caching is disabled */
+    private final ResolvedPathCache resolvedPaths;
+
+    /** Watched web roots, keyed by their path as configured, with their canonical form */
+    private final Map<String, File> watchedRoots = new ConcurrentHashMap<>();
+    private FileWatcher watcher;
+
+    /** Current index per watched root; absent while a rebuild is pending */
+    private final Map<String, StaticIndex> indexes = new ConcurrentHashMap<>();
+
+    /** Bumped on every change so a scan that raced with one is discarded */
+    private final Map<String, AtomicLong> indexGenerations = new ConcurrentHashMap<>();
+    private ScheduledExecutorService indexer;
+
+    /** Delay before rebuilding an index, so bursts of changes cost one scan */
+    private static final long REINDEX_DELAY_MILLIS = 250;
+
+    public StaticFileCache(StaticCacheConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("StaticCacheConfig cannot be null");
+        }
+        if (config.getMaxBytes() <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.config = config;
+        this.resolvedPaths = config.isPathCaching()
+                ? new ResolvedPathCache(config.getMaxResolvedPaths(), config.isNegativeCaching()
+                        ? new NegativePathCache(config.getMaxNegativeEntries(), config.getNegativeTtlMillis())
+                        : null)
+                : null;
+    }
+
+    /**
+     * Installs the shared cache instance used by static file responses.
+     * Passing null or a disabled config removes the cache.
+     *
+     * @param config The cache configuration
+     */
+    public static synchronized void configure(StaticCacheConfig config) {
+        if (instance != null) {
+            instance.close();
+        }
+        instance = (config == null || !config.isEnabled()) ? null : new StaticFileCache(config);
+    }
+
+    /**
+     * Get the shared instance.
+     *
+     * @return The cache, or null if caching is disabled
+     */
+    public static StaticFileCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Starts pushing filesystem changes under a web root into the cache.
+     * Does nothing if file watching is disabled; failures are logged and the
+     * cache falls back to periodic revalidation.
+     *
+     * @param webRoot The web root to watch
+     */
+    public synchronized void watch(File webRoot) {
+        if (!config.isWatchFiles() || watchedRoots.containsKey(webRoot.getPath())) {
+            return;
+        }
+        try {
+            if (watcher == null) {
+                watcher = new FileWatcher();
+                watcher.addListener(this::onChange);
+            }
+            File canonicalRoot = webRoot.getCanonicalFile();
+            watcher.watch(canonicalRoot.toPath());
+            watchedRoots.put(webRoot.getPath(), canonicalRoot);
+        } catch (IOException e) {
+            Logger.wrn("Cannot watch " + webRoot + " for changes: " + e.getMessage());
+            return;
+        }
+
+        if (config.isIndexing()) {
+            indexGenerations.put(webRoot.getPath(), new AtomicLong());
+            StaticIndex index = buildIndex(webRoot);
+            if (index != null) {
+                index.logReport(webRoot);
+            }
+        }
+    }
+
+    /**
+     * Scans a web root and installs its index, unless the tree changed while
+     * scanning.
+     */
+    private StaticIndex buildIndex(File webRoot) {
+        AtomicLong generation = indexGenerations.get(webRoot.getPath());
+        long expected = generation.get();
+        try {
+            StaticIndex index = StaticIndex.scan(webRoot);
+            synchronized (generation) {
+                if (generation.get() != expected) {
+                    return null; // A newer rebuild is already scheduled
+                }
+                indexes.put(webRoot.getPath(), index);
+            }
+            return index;
+        } catch (IOException e) {
+            Logger.err("Failed to index " + webRoot + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Drops the index of a root right away, so requests fall back to the
+     * filesystem, and rebuilds it once changes settle.
+     */
+    private void reindex(String key) {
+        AtomicLong generation = indexGenerations.get(key);
+        synchronized (generation) {
+            generation.incrementAndGet();
+            indexes.remove(key);
+        }
+
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            if (indexer == null) {
+                indexer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "static-indexer");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            executor = indexer;
+        }
+        long scheduled = generation.get();
+        executor.schedule(() -> {
+            if (generation.get() == scheduled) {
+                buildIndex(new File(key));
+            }
+        }, REINDEX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the current index of a web root.
+     *
+     * @param webRoot The web root
+     * @return The index, or null if indexing is off or a rebuild is pending
+     */
+    public StaticIndex getIndex(File webRoot) {
+        return indexes.get(webRoot.getPath());
+    }
+
+    /**
+     * Looks up a request path in the current index of a web root. The index
+     * is dropped as soon as the tree changes, so its metadata is current.
+     *
+     * @param requestPath The request path, still URL-encoded
+     * @param webRoot     The web root
+     * @return The asset, or null if the root has no index or it lacks the path
+     */
+    public StaticIndex.Asset findIndexed(String requestPath, File webRoot) {
+        StaticIndex index = indexes.get(webRoot.getPath());
+        return (index != null) ? index.find(requestPath) : null;
+    }
+
+    /**
+     * Resolves a request path against a web root, from the index or the path
+     * cache when the root is watched.
+     *
+     * @param requestPath The request path, still URL-encoded
+     * @param webRoot     The base directory for serving files
+     * @return The resolution
+     * @throws IOException If the path cannot be decoded or canonicalized
+     */
+    public ResolvedPath resolve(String requestPath, File webRoot) throws IOException {
+        StaticIndex.Asset indexed = findIndexed(requestPath, webRoot);
+        if (indexed != null) {
+            return indexed.resolved();
+        }
+        if (resolvedPaths == null || !watchedRoots.containsKey(webRoot.getPath())) {
+            return ResolvedPath.resolve(requestPath, webRoot);
+        }
+        return resolvedPaths.resolve(requestPath, webRoot);
+    }
+
+    private void onChange(Path changed) {
+        if (resolvedPaths != null) {
+            resolvedPaths.clear();
+        }
+        for (Map.Entry<String, File> root : watchedRoots.entrySet()) {
+            if (indexGenerations.containsKey(root.getKey()) && changed.startsWith(root.getValue().toPath())) {
+                reindex(root.getKey());
+            }
+        }
+        String path = changed.toString();
+        invalidateTree(path);
+        if (path.endsWith(".gz")) {
+            invalidate(path.substring(0, path.length() - 3)); // Precompressed sibling changed
+        }
+    }
+
+    /**
+     * Returns the cached contents of a file, loading it on a miss.
+     * The returned entry has already been acquired; the caller must
+     * {@link CachedFile#release() release} it once the body has been written.
+     *
+     * @param resource The canonical file to serve
+     * @param mimeType MIME type to encode into the cached headers
+     * @return The cached entry, or null if the file is too large to cache
+     * @throws IOException If the file cannot be read
+     */
+    public CachedFile get(File resource, String mimeType) throws IOException {
+        String key = resource.getPath();
+        long now = System.currentTimeMillis();
+
+        CachedFile entry = lookup(entries, key, resource, now);
+        if (entry == null && config.isMemoryMapping()) {
+            entry = lookup(mappedEntries, key, resource, now);
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+
+        misses.increment();
+        long length = resource.length();
+        if (config.isMemoryMapping() && length >= config.getMappedThreshold() && length <= Integer.MAX_VALUE) {
+            MappedFile mapped = MappedFile.map(resource, mimeType);
+            mapped.acquire();
+            putMapped(key, mapped);
+            return mapped;
+        }
+        if (length > config.getMaxEntryBytes() || length > config.getMaxBytes()) {
+            return null;
+        }
+
+        long lastModified = resource.lastModified();
+        CachedFile loaded = new CachedFile(key, lastModified, mimeType, read(resource));
+        put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Returns the gzip variant of a file, loading it on a miss. A sibling
+     * {@code .gz} file no older than the original is used as-is; otherwise the
+     * file is compressed once and the result cached under the original's
+     * path and modification time. The returned entry has already been acquired.
+     *
+     * @param resource The canonical file to serve
+     * @param mimeType MIME type of the original file
+     * @return The compressed entry, or null if the file should be sent as-is
+     * @throws IOException If the file cannot be read
+     */
+    public CachedFile getGzip(File resource, String mimeType) throws IOException {
+        String key = resource.getPath() + GZIP_SUFFIX;
+        CachedFile entry = lookup(entries, key, resource, System.currentTimeMillis());
+        if (entry == null) {
+            misses.increment();
+            long length = resource.length();
+            if (length < config.getCompressionMinBytes() || length > config.getMaxEntryBytes()) {
+                return null;
+            }
+
+            long lastModified = resource.lastModified();
+            File sibling = new File(resource.getPath() + ".gz");
+            byte[] compressed = (sibling.isFile() && sibling.lastModified() >= lastModified)
+                    ? Files.readAllBytes(sibling.toPath())
+                    : gzip(Files.readAllBytes(resource.toPath()));
+
+            entry = new CachedFile(key, lastModified, length, mimeType, "gzip", toBuffer(compressed));
+            put(key, entry);
+        } else {
+            hits.increment();
+        }
+
+        // Incompressible content stays cached so it is not compressed again
+        if (entry.getLength() >= entry.getSourceLength()) {
+            entry.release();
+            return null;
+        }
+        return entry;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private ByteBuffer toBuffer(byte[] data) {
+        if (!config.isOffHeap()) {
+            return ByteBuffer.wrap(data);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        return buffer;
+    }
+
+    /**
+     * Finds a live entry, revalidating it against the file on disk if it has
+     * not been checked recently. Changed files are dropped from the cache.
+     */
+    private CachedFile lookup(Map<String, CachedFile> map, String key, File resource, long now) {
+        CachedFile entry;
+        synchronized (map) {
+            entry = map.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isStale(now, config.getRevalidateMillis())) {
+            if (!entry.matches(resource.lastModified(), resource.length())) {
+                remove(map, key, entry);
+                invalidations.increment();
+                return null;
+            }
+            entry.markValidated(now);
+        }
+
+        return entry.acquire() ? entry : null;
+    }
+
+    /**
+     * Removes an entry only if it is still the one mapped to the key, so a
+     * concurrent reload is not thrown away.
+     */
+    private void remove(Map<String, CachedFile> map, String key, CachedFile entry) {
+        boolean removed;
+        synchronized (map) {
+            removed = map.remove(key, entry);
+            if (removed && map == entries) {
+                currentBytes -= entry.getLength();
+            }
+        }
+        if (removed && map == mappedEntries) {
+            entry.release();
+        }
+    }
+
+    /**
+     * Removes a single entry from the cache. Mapped files stay mapped until
+     * in-flight responses have released them.
+     *
+     * @param path Canonical path of the file
+     */
+    public void invalidate(String path) {
+        synchronized (entries) {
+            for (String key : new String[] { path, path + GZIP_SUFFIX }) {
+                CachedFile removed = entries.remove(key);
+                if (removed != null) {
+                    currentBytes -= removed.getLength();
+                }
+            }
+        }
+        CachedFile unmapped;
+        synchronized (mappedEntries) {
+            unmapped = mappedEntries.remove(path);
+        }
+        if (unmapped != null) {
+            unmapped.release();
+        }
+    }
+
+    /**
+     * Removes every entry for a file or for any file below a directory.
+     *
+     * @param path Canonical path of the file or directory
+     */
+    public void invalidateTree(String path) {
+        String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+        synchronized (entries) {
+            Iterator<Map.Entry<String, CachedFile>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, CachedFile> entry = it.next();
+                String filePath = entry.getValue().getPath();
+                if (filePath.equals(path) || filePath.startsWith(path + GZIP_SUFFIX)
+                        || filePath.startsWith(prefix)) {
+                    currentBytes -= entry.getValue().getLength();
+                    it.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+        synchronized (mappedEntries) {
+            Iterator<Map.Entry<String, CachedFile>> it = mappedEntries.entrySet().iterator();
+            while (it.hasNext()) {
+                CachedFile mapped = it.next().getValue();
+                if (mapped.getPath().equals(path) || mapped.getPath().startsWith(prefix)) {
+                    it.remove();
+                    mapped.release();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops watching for changes and drops every entry.
+     */
+    public synchronized void close() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                Logger.err("Failed to close file watcher: " + e.getMessage());
+            }
+            watcher = null;
+        }
+        if (indexer != null) {
+            indexer.shutdownNow();
+            indexer = null;
+        }
+        watchedRoots.clear();
+        indexes.clear();
+        indexGenerations.clear();
+        clear();
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        if (resolvedPaths != null) {
+            resolvedPaths.clear();
+        }
+        synchronized (entries) {
+            entries.clear();
+            currentBytes = 0;
+        }
+        synchronized (mappedEntries) {
+            mappedEntries.values().forEach(CachedFile::release);
+            mappedEntries.clear();
+        }
+    }
+
+    private void put(String key, CachedFile file) {
+        synchronized (entries) {
+            CachedFile previous = entries.put(key, file);
+            if (previous != null) {
+                currentBytes -= previous.getLength();
+            }
+            currentBytes += file.getLength();
+
+            Iterator<Map.Entry<String, CachedFile>> it = entries.entrySet().iterator();
+            while (currentBytes > config.getMaxBytes() && it.hasNext()) {
+                Map.Entry<String, CachedFile> eldest = it.next();
+                if (eldest.getValue() == file) {
+                    continue;
+                }
+                currentBytes -= eldest.getValue().getLength();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void putMapped(String key, MappedFile file) {
+        synchronized (mappedEntries) {
+            CachedFile previous = mappedEntries.put(key, file);
+            if (previous != null) {
+                previous.release();
+            }
+
+            Iterator<Map.Entry<String, CachedFile>> it = mappedEntries.entrySet().iterator();
+            while (mappedEntries.size() > config.getMaxMappedFiles() && it.hasNext()) {
+                Map.Entry<String, CachedFile> eldest = it.next();
+                if (eldest.getValue() == file) {
+                    continue;
+                }
+                it.remove();
+                eldest.getValue().release();
+                evictions.increment();
+            }
+        }
+    }
+
+    private ByteBuffer read(File resource) throws IOException {
+        if (!config.isOffHeap()) {
+            return ByteBuffer.wrap(Files.readAllBytes(resource.toPath()));
+        }
+
+        try (FileChannel channel = FileChannel.open(resource.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or EOF
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    // Metrics
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups served from memory.
+     *
+     * @return Hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public long getCurrentBytes() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the total size of the files currently memory-mapped.
+     */
+    public long getMappedBytes() {
+        synchronized (mappedEntries) {
+            return mappedEntries.values().stream().mapToLong(CachedFile::getLength).sum();
+        }
+    }
+
+    public int getMappedCount() {
+        synchronized (mappedEntries) {
+            return mappedEntries.size();
+        }
+    }
+
+    /**
+     * Returns the request path cache, or null if path caching is disabled.
+     */
+    public ResolvedPathCache getResolvedPaths() {
+        return resolvedPaths;
+    }
+
+    public StaticCacheConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Logs a one-line summary of the cache metrics.
+     */
+    public void logStats() {
+        Logger.log(String.format("Static cache: %d entries, %d bytes, %d mapped (%d bytes), hit ratio %.2f (%d hits, %d misses, %d evictions, %d invalidations)",
+                getEntryCount(), getCurrentBytes(), getMappedCount(), getMappedBytes(), getHitRatio(), getHits(),
+                getMisses(), getEvictions(), getInvalidations()));
+        if (resolvedPaths != null) {
+            Logger.log(String.format("Path cache: %d entries (%d hits, %d misses)", resolvedPaths.size(),
+                    resolvedPaths.getHits(), resolvedPaths.getMisses()));
+        }
+        if (resolvedPaths != null && resolvedPaths.getMissing() != null) {
+            NegativePathCache missing = resolvedPaths.getMissing();
+            Logger.log(String.format("Missing-path cache: %d entries (%d hits)", missing.size(), missing.getHits()));
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.hindbiswas.server.cache;
+
+import com.hindbiswas.server.http.HttpUtils;
+import com.hindbiswas.server.http.ResolvedPath;
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable, in-memory index of the servable files under a web root,
+ * built by a single scan. Paths are stored in a prefix-compressed trie so a
+ * lookup is a walk over shared path prefixes with no filesystem access.
+ *
+ * <p>
+ * Directories are indexed under their own path when they contain an
+ * {@code index.jhp} or {@code index.html}, resolving to that file. Paths the
+ * index does not know, or cannot answer safely (e.g. containing {@code ..}),
+ * yield null so the caller falls back to the filesystem.
+ * </p>
+ */
+public class StaticIndex {
+
+    /**
+     * A servable file as seen at scan time.
+     *
+     * @param resolved     the resolution handed to responses
+     * @param length       file size in bytes
+     * @param lastModified modification time in milliseconds
+     * @param etag         entity tag derived from size and modification time
+     */
+    public record Asset(ResolvedPath resolved, long length, long lastModified, String etag) {
+
+        public File file() {
+            return resolved.resource();
+        }
+
+        public String relativePath() {
+            return resolved.relativePath();
+        }
+
+        public String mimeType() {
+            return resolved.mimeType();
+        }
+    }
+
+    /** A trie node; edges carry whole substrings, sorted by first character */
+    private static final class Node {
+        private final Asset value;
+        private final char[] firstChars;
+        private final String[] labels;
+        private final Node[] children;
+
+        private Node(Asset value, char[] firstChars, String[] labels, Node[] children) {
+            this.value = value;
+            this.firstChars = firstChars;
+            this.labels = labels;
+            this.children = children;
+        }
+    }
+
+    private final Node root;
+    private final List<Asset> assets;
+    private final long totalBytes;
+    private final long scanMillis;
+
+    private StaticIndex(Node root, List<Asset> assets, long totalBytes, long scanMillis) {
+        this.root = root;
+        this.assets = assets;
+        this.totalBytes = totalBytes;
+        this.scanMillis = scanMillis;
+    }
+
+    /**
+     * Scans a web root and builds its index. Symbolic links are not followed;
+     * requests for them fall back to the filesystem.
+     *
+     * @param webRoot The web root to scan
+     * @return The index
+     * @throws IOException If the tree cannot be walked
+     */
+    public static StaticIndex scan(File webRoot) throws IOException {
+        long start = System.currentTimeMillis();
+        Path rootPath = webRoot.getCanonicalFile().toPath();
+        TreeMap<String, Asset> files = new TreeMap<>();
+
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && Files.isReadable(file)) {
+                    String relativePath = rootPath.relativize(file).toString().replace(File.separatorChar, '/');
+                    files.put(relativePath, asset(file.toFile(), relativePath, attrs));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                Logger.wrn("Skipping " + file + " while indexing: " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Directories resolve to their index file, matching HttpUtils.indexIfDirectory
+        TreeMap<String, Asset> keys = new TreeMap<>(files);
+        for (Map.Entry<String, Asset> entry : files.entrySet()) {
+            String path = entry.getKey();
+            int slash = path.lastIndexOf('/');
+            String name = path.substring(slash + 1);
+            String dir = (slash < 0) ? "" : path.substring(0, slash);
+            if (name.equals("index.jhp") || (name.equals("index.html") && !files.containsKey(
+                    dir.isEmpty() ? "index.jhp" : dir + "/index.jhp"))) {
+                keys.put(dir, entry.getValue());
+            }
+        }
+
+        List<String> sortedKeys = new ArrayList<>(keys.keySet());
+        List<Asset> sortedValues = new ArrayList<>(keys.values());
+        Node root = build(sortedKeys, sortedValues, 0, sortedKeys.size(), 0);
+
+        long totalBytes = files.values().stream().mapToLong(Asset::length).sum();
+        return new StaticIndex(root, Collections.unmodifiableList(new ArrayList<>(files.values())), totalBytes,
+                System.currentTimeMillis() - start);
+    }
+
+    private static Asset asset(File file, String relativePath, BasicFileAttributes attrs) {
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        ResolvedPath resolved = new ResolvedPath(file, relativePath, true, true,
+                HttpUtils.guessMime(file.getName()));
+        return new Asset(resolved, attrs.size(), lastModified, HttpUtils.buildETag(lastModified, attrs.size()));
+    }
+
+    /**
+     * Builds the subtree for the sorted keys in [lo, hi), which all share
+     * their first {@code depth} characters.
+     */
+    private static Node build(List<String> keys, List<Asset> values, int lo, int hi, int depth) {
+        Asset value = null;
+        if (lo < hi && keys.get(lo).length() == depth) {
+            value = values.get(lo);
+            lo++;
+        }
+
+        List<Character> firstChars = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        int i = lo;
+        while (i < hi) {
+            char c = keys.get(i).charAt(depth);
+            int j = i + 1;
+            while (j < hi && keys.get(j).charAt(depth) == c) {
+                j++;
+            }
+
+            // Sorted keys: the group's common prefix is that of its first and last key
+            String first = keys.get(i);
+            String last = keys.get(j - 1);
+            int end = depth + 1;
+            while (end < first.length() && end < last.length() && first.charAt(end) == last.charAt(end)) {
+                end++;
+            }
+
+            firstChars.add(c);
+            labels.add(first.substring(depth, end));
+            children.add(build(keys, values, i, j, end));
+            i = j;
+        }
+
+        char[] chars = new char[firstChars.size()];
+        for (int k = 0; k < chars.length; k++) {
+            chars[k] = firstChars.get(k);
+        }
+        return new Node(value, chars, labels.toArray(new String[0]), children.toArray(new Node[0]));
+    }
+
+    /**
+     * Looks up a file by its path relative to the web root.
+     *
+     * @param relativePath The decoded path, without a leading slash
+     * @return The asset, or null if it is not indexed
+     */
+    public Asset lookup(String relativePath) {
+        Node node = root;
+        int pos = 0;
+        while (pos < relativePath.length()) {
+            int child = Arrays.binarySearch(node.firstChars, relativePath.charAt(pos));
+            if (child < 0 || !relativePath.startsWith(node.labels[child], pos)) {
+                return null;
+            }
+            pos += node.labels[child].length();
+            node = node.children[child];
+        }
+        return node.value;
+    }
+
+    /**
+     * Resolves a raw request path from the index alone.
+     *
+     * @param requestPath The request path, still URL-encoded
+     * @return The resolution, or null if the filesystem must be consulted
+     */
+    public ResolvedPath resolve(String requestPath) {
+        Asset asset = find(requestPath);
+        return (asset != null) ? asset.resolved() : null;
+    }
+
+    /**
+     * Looks up a raw request path, for callers that also want the size,
+     * modification time and entity tag recorded at scan time.
+     *
+     * @param requestPath The request path, still URL-encoded
+     * @return The asset, or null if the filesystem must be consulted
+     */
+    public Asset find(String requestPath) {
+        String key = toKey(requestPath);
+        return (key != null) ? lookup(key) : null;
+    }
+
+    /**
+     * Turns a raw request path into a lookup key: decoded, without leading or
+     * trailing slash.
+     *
+     * @param requestPath The request path, still URL-encoded
+     * @return The key, or null if the path is not plain enough to look up
+     */
+    static String toKey(String requestPath) {
+        String path = (requestPath.startsWith("/")) ? requestPath.substring(1) : requestPath;
+        try {
+            path = URLDecoder.decode(path, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return isPlain(path) ? path : null;
+    }
+
+    /**
+     * Rejects paths whose meaning depends on filesystem normalization: empty,
+     * dot or dot-dot segments and backslashes.
+     */
+    private static boolean isPlain(String path) {
+        if (path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) {
+            return false;
+        }
+        if (path.isEmpty()) {
+            return true;
+        }
+        for (String segment : path.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns every indexed file, ordered by path.
+     */
+    public List<Asset> getAssets() {
+        return assets;
+    }
+
+    public int getAssetCount() {
+        return assets.size();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Logs a summary of the index: asset count, total size, scan time and a
+     * breakdown by MIME type.
+     *
+     * @param webRoot The web root the index was built from
+     */
+    public void logReport(File webRoot) {
+        Map<String, long[]> byType = new TreeMap<>();
+        for (Asset asset : assets) {
+            long[] counts = byType.computeIfAbsent(asset.mimeType(), k -> new long[2]);
+            counts[0]++;
+            counts[1] += asset.length();
+        }
+
+        Logger.log(String.format("Static index of %s: %d assets, %d bytes, scanned in %d ms", webRoot,
+                getAssetCount(), totalBytes, scanMillis));
+        for (Map.Entry<String, long[]> entry : byType.entrySet()) {
+            Logger.log(String.format("  %-28s %6d files %12d bytes", entry.getKey(), entry.getValue()[0],
+                    entry.getValue()[1]));
+        }
+    }
+}
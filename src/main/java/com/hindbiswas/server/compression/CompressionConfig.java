@@ -0,0 +1,68 @@
+package com.hindbiswas.server.compression;
+
+import java.util.zip.Deflater;
+
+/**
+ * Configuration for on-the-fly compression of dynamic responses.
+ * Provides builder-style API for configuring compression behavior.
+ */
+public class CompressionConfig {
+    private boolean enabled = true;
+    private int minBytes = 1024; // 1KB
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    public CompressionConfig() {
+    }
+
+    public CompressionConfig setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Sets the smallest body worth compressing. Smaller bodies are sent as-is.
+     */
+    public CompressionConfig setMinBytes(int minBytes) {
+        this.minBytes = minBytes;
+        return this;
+    }
+
+    /**
+     * Sets the deflate level, from 1 (fastest) to 9 (smallest), or -1 for the
+     * default.
+     */
+    public CompressionConfig setLevel(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9");
+        }
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Sets how many idle Deflater instances are kept for reuse.
+     */
+    public CompressionConfig setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    // Getters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+}
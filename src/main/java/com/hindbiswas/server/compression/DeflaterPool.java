@@ -0,0 +1,52 @@
+package com.hindbiswas.server.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * A bounded pool of raw (nowrap) Deflater instances.
+ * Deflaters hold native memory, so reusing them avoids both the allocation
+ * and the finalization cost of creating one per response.
+ */
+public class DeflaterPool {
+    private final BlockingQueue<Deflater> idle;
+    private final int level;
+
+    public DeflaterPool(int size, int level) {
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.level = level;
+    }
+
+    /**
+     * Takes an idle Deflater, creating one if the pool is empty.
+     *
+     * @return a reset Deflater ready for a new stream
+     */
+    public Deflater borrow() {
+        Deflater deflater = idle.poll();
+        return (deflater != null) ? deflater : new Deflater(level, true);
+    }
+
+    /**
+     * Returns a Deflater to the pool, or frees it if the pool is full.
+     *
+     * @param deflater the Deflater to return
+     */
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Frees every idle Deflater.
+     */
+    public void clear() {
+        Deflater deflater;
+        while ((deflater = idle.poll()) != null) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.hindbiswas.server.compression;
+
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.HttpUtils;
+import com.hindbiswas.server.http.Request;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses dynamic response bodies (rendered templates, JSON) with gzip.
+ *
+ * <p>
+ * Compression happens while the response is written: deflated output is sent
+ * in chunks as it is produced instead of being buffered first, using Deflater
+ * instances borrowed from a shared {@link DeflaterPool}.
+ * </p>
+ */
+public class ResponseCompressor {
+    private static volatile ResponseCompressor instance = null;
+
+    /** Fixed gzip member header: magic, deflate, no flags, no mtime, unknown OS */
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CompressionConfig config;
+    private final DeflaterPool pool;
+
+    public ResponseCompressor(CompressionConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("CompressionConfig cannot be null");
+        }
+        this.config = config;
+        this.pool = new DeflaterPool(config.getPoolSize(), config.getLevel());
+    }
+
+    /**
+     * Installs the shared compressor used for dynamic responses.
+     * Passing null or a disabled config turns compression off.
+     *
+     * @param config The compression configuration
+     */
+    public static synchronized void configure(CompressionConfig config) {
+        if (instance != null) {
+            instance.pool.clear();
+        }
+        instance = (config == null || !config.isEnabled()) ? null : new ResponseCompressor(config);
+    }
+
+    /**
+     * Get the shared instance.
+     *
+     * @return The compressor, or null if compression is disabled
+     */
+    public static ResponseCompressor getInstance() {
+        return instance;
+    }
+
+    /**
+     * Switches the response to a gzip-encoded, chunked body if the client
+     * accepts gzip and the body is worth compressing. Static files, which
+     * carry an ETag for their uncompressed bytes, are left untouched.
+     *
+     * @param request  the HTTP request
+     * @param response the response about to be sent
+     */
+    public void apply(Request request, HttpResponse response) {
+        if (!isEligible(request, response)) {
+            return;
+        }
+
+        byte[] body = response.getBody();
+        if (body.length < config.getMinBytes()) {
+            return;
+        }
+
+        String vary = response.getHeader("Vary");
+        response.setHeader("Vary", (vary == null) ? "Accept-Encoding" : vary + ", Accept-Encoding");
+        response.setHeader("Content-Encoding", "gzip");
+        response.setStreamingBody(out -> writeGzip(out, body), -1);
+    }
+
+    private boolean isEligible(Request request, HttpResponse response) {
+        int status = response.getStatusCode();
+        return request != null
+                && status >= 200 && status < 300 && status != 204 && status != 206
+                && !"HEAD".equals(request.method)
+                && !request.isHttp10() // Chunked coding needs HTTP/1.1
+                && !response.isBodyStreamed()
+                && response.getHeader("Content-Encoding") == null
+                && response.getHeader("ETag") == null
+                && HttpUtils.isCompressible(response.getMimeType())
+                && HttpUtils.acceptsEncoding(request, "gzip");
+    }
+
+    private void writeGzip(OutputStream out, byte[] body) throws IOException {
+        // Coalesce header, deflate output and trailer into full-sized chunks
+        BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        Deflater deflater = pool.borrow();
+        try {
+            buffered.write(GZIP_HEADER);
+            DeflaterOutputStream deflated = new DeflaterOutputStream(buffered, deflater, BUFFER_SIZE);
+            deflated.write(body);
+            deflated.finish(); // Not closed: the socket stream stays open
+
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            buffered.write(trailer((int) crc.getValue(), body.length));
+            buffered.flush();
+        } finally {
+            pool.release(deflater);
+        }
+    }
+
+    private static byte[] trailer(int crc, int size) {
+        return new byte[] {
+                (byte) crc, (byte) (crc >>> 8), (byte) (crc >>> 16), (byte) (crc >>> 24),
+                (byte) size, (byte) (size >>> 8), (byte) (size >>> 16), (byte) (size >>> 24) };
+    }
+
+    public CompressionConfig getConfig() {
+        return config;
+    }
+}
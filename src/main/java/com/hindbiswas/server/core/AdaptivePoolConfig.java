@@ -0,0 +1,81 @@
+package com.hindbiswas.server.core;
+
+/**
+ * Configuration for the self-sizing connection pool.
+ * Provides builder-style API for configuring its bounds and targets.
+ */
+public class AdaptivePoolConfig {
+    private int minThreads = 4;
+    private int maxThreads = 256;
+    private long intervalMillis = 1000; // 1 second
+    private double targetUtilization = 0.75;
+    private long maxQueueWaitMillis = 10;
+
+    public AdaptivePoolConfig() {
+    }
+
+    /**
+     * Sets the smallest the pool may shrink to.
+     */
+    public AdaptivePoolConfig setMinThreads(int minThreads) {
+        this.minThreads = Math.max(1, minThreads);
+        return this;
+    }
+
+    /**
+     * Sets the largest the pool may grow to.
+     */
+    public AdaptivePoolConfig setMaxThreads(int maxThreads) {
+        this.maxThreads = Math.max(1, maxThreads);
+        return this;
+    }
+
+    /**
+     * Sets how often the pool is measured and resized.
+     */
+    public AdaptivePoolConfig setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = Math.max(10, intervalMillis);
+        return this;
+    }
+
+    /**
+     * Sets the share of threads that should be busy at the measured load;
+     * lower values keep more headroom for bursts.
+     */
+    public AdaptivePoolConfig setTargetUtilization(double targetUtilization) {
+        if (targetUtilization <= 0 || targetUtilization > 1) {
+            throw new IllegalArgumentException("Target utilization must be in (0, 1]: " + targetUtilization);
+        }
+        this.targetUtilization = targetUtilization;
+        return this;
+    }
+
+    /**
+     * Sets the average time connections may wait for a thread before the
+     * pool grows regardless of utilization.
+     */
+    public AdaptivePoolConfig setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        return this;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return Math.max(minThreads, maxThreads);
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public double getTargetUtilization() {
+        return targetUtilization;
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+}
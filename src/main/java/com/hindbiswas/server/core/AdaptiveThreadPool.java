@@ -0,0 +1,148 @@
+package com.hindbiswas.server.core;
+
+import com.hindbiswas.server.logger.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread pool that resizes itself within bounds from what it measures.
+ *
+ * <p>
+ * Every interval it records throughput, time spent queued and time spent
+ * running, and derives the concurrency the load needs by Little's law
+ * (arrival rate times time in service, plus whatever is running or waiting
+ * right now), divided by the target utilization. It grows to that size at
+ * once, and further if tasks waited longer than allowed, but shrinks by at
+ * most a quarter per interval so a short lull does not throw threads away.
+ * Every resize is logged with the numbers behind it.
+ * </p>
+ */
+public class AdaptiveThreadPool extends ThreadPoolExecutor {
+    private final AdaptivePoolConfig config;
+    private final ScheduledExecutorService tuner;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private final ThreadLocal<Long> startedAt = new ThreadLocal<>();
+
+    /** A task stamped with the time it was queued */
+    private record Timed(Runnable task, long queuedAt) implements Runnable {
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * Creates the pool and starts resizing it.
+     *
+     * @param config         bounds and targets
+     * @param initialThreads the starting size, clamped to the bounds
+     */
+    public AdaptiveThreadPool(AdaptivePoolConfig config, int initialThreads) {
+        super(clamp(initialThreads, config), clamp(initialThreads, config), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory());
+        this.config = config;
+        this.tuner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pool-tuner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tuner.scheduleAtFixedRate(this::tune, config.getIntervalMillis(), config.getIntervalMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, "connection-worker-" + counter.incrementAndGet());
+    }
+
+    private static int clamp(int threads, AdaptivePoolConfig config) {
+        return Math.max(config.getMinThreads(), Math.min(config.getMaxThreads(), threads));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new Timed(command, System.nanoTime()));
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        long now = System.nanoTime();
+        if (task instanceof Timed timed) {
+            waitNanos.add(now - timed.queuedAt());
+        }
+        startedAt.set(now);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        Long start = startedAt.get();
+        if (start != null) {
+            serviceNanos.add(System.nanoTime() - start);
+            startedAt.remove();
+        }
+        completed.increment();
+    }
+
+    /** Measures the last interval and resizes the pool */
+    private void tune() {
+        try {
+            long done = completed.sumThenReset();
+            long waited = waitNanos.sumThenReset();
+            long served = serviceNanos.sumThenReset();
+            double seconds = config.getIntervalMillis() / 1000.0;
+
+            double throughput = done / seconds;
+            double serviceSeconds = (done > 0) ? served / 1e9 / done : 0;
+            double waitMillis = (done > 0) ? waited / 1e6 / done : 0;
+            int active = getActiveCount();
+            int queued = getQueue().size();
+
+            // Little's law: L = lambda * W, but never below what is in the pool right now
+            double needed = Math.max(throughput * serviceSeconds, active + queued);
+            int size = getMaximumPoolSize();
+            int target = (int) Math.ceil(needed / config.getTargetUtilization());
+            if (waitMillis > config.getMaxQueueWaitMillis() || queued > 0) {
+                target = Math.max(target, size + Math.max(1, size / 4));
+            } else if (target < size) {
+                target = Math.max(target, size - Math.max(1, size / 4));
+            }
+            target = clamp(target, config);
+
+            if (target != size) {
+                resize(target);
+                Logger.log(String.format(
+                        "Connection pool %s %d -> %d threads (%.1f req/s, %.1f ms in service, %.1f ms queued, %d active, %d waiting)",
+                        target > size ? "grew" : "shrank", size, target, throughput, serviceSeconds * 1000,
+                        waitMillis, active, queued));
+            }
+        } catch (RuntimeException e) {
+            Logger.err("Connection pool tuning failed: " + e.getMessage());
+        }
+    }
+
+    private void resize(int threads) {
+        if (threads > getMaximumPoolSize()) {
+            setMaximumPoolSize(threads);
+            setCorePoolSize(threads);
+        } else {
+            setCorePoolSize(threads);
+            setMaximumPoolSize(threads);
+        }
+    }
+
+    @Override
+    protected void terminated() {
+        tuner.shutdownNow();
+        super.terminated();
+    }
+}
@@ -0,0 +1,15 @@
+package com.hindbiswas.server.core;
+
+/**
+ * The workload classes requests are dispatched by when separate worker pools
+ * are enabled. Each class runs on its own pool of dedicated threads, so one
+ * class cannot take the threads of another.
+ */
+public enum RequestClass {
+    /** Static files: cheap and latency sensitive */
+    STATIC,
+    /** Route handlers */
+    API,
+    /** JHP renders: the most expensive */
+    TEMPLATE
+}
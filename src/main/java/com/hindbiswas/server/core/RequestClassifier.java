@@ -0,0 +1,27 @@
+package com.hindbiswas.server.core;
+
+import com.hindbiswas.server.http.Request;
+
+/**
+ * Assigns requests to a {@link RequestClass}. Custom classifiers can tag
+ * routes by path, e.g. sending {@code /reports/} to {@link RequestClass#TEMPLATE}
+ * alongside renders.
+ */
+@FunctionalInterface
+public interface RequestClassifier {
+
+    /**
+     * Classifies by path alone: {@code .jhp} files and directories (which may
+     * hold an {@code index.jhp}) are templates, other paths with a file
+     * extension are static, everything else is API.
+     */
+    RequestClassifier DEFAULT = request -> {
+        String path = request.path;
+        if (path.endsWith("/") || path.endsWith(".jhp")) {
+            return RequestClass.TEMPLATE;
+        }
+        return (path.lastIndexOf('.') > path.lastIndexOf('/')) ? RequestClass.STATIC : RequestClass.API;
+    };
+
+    RequestClass classify(Request request);
+}
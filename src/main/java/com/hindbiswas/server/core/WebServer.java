@@ -1,7 +1,14 @@
 package com.hindbiswas.server.core;
 
+import com.hindbiswas.server.cache.StaticCacheConfig;
+import com.hindbiswas.server.cache.StaticFileCache;
+import com.hindbiswas.server.compression.CompressionConfig;
+import com.hindbiswas.server.compression.ResponseCompressor;
 import com.hindbiswas.server.facade.JhpEngine;
 import com.hindbiswas.server.handler.ConnectionHandler;
+import com.hindbiswas.server.handler.DisconnectWatcher;
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.Request;
 import com.hindbiswas.server.logger.Logger;
 import com.hindbiswas.server.routing.Router;
 import com.hindbiswas.server.routing.StaticRouter;
@@ -13,6 +20,7 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.HashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -32,8 +40,14 @@ public class WebServer {
     /** Port on which the server listens */
     private final int port;
 
-    /** Thread pool for handling client connections concurrently */
-    private final ExecutorService pool;
+    /** Thread pool for handling client connections concurrently; created on start */
+    private volatile ExecutorService pool;
+
+    /** Size of the connection pool, or its starting size if it adapts */
+    private final int maxThreads;
+
+    /** Configuration for a self-sizing connection pool, or null for a fixed one */
+    private AdaptivePoolConfig adaptivePoolConfig = null;
 
     /** The directory used as the root for serving files */
     private final File webRoot;
@@ -50,6 +64,27 @@ public class WebServer {
     /** The session manager for handling sessions */
     private final SessionManager sessionManager;
 
+    /** Configuration for the static file cache, or null to serve from disk */
+    private StaticCacheConfig staticCacheConfig = null;
+
+    /** Configuration for dynamic response compression, or null to disable it */
+    private CompressionConfig compressionConfig = null;
+
+    /** Configuration for per-class worker pools, or null to handle requests on the connection pool */
+    private WorkerPoolConfig workerPoolConfig = null;
+
+    /** Worker pools per request class while running, if configured */
+    private WorkerPools workerPools = null;
+
+    /** Time each request may take, or 0 for no deadline */
+    private long requestTimeoutMillis = 0;
+
+    /** Interval between client disconnect checks, or 0 to not check */
+    private long disconnectCheckMillis = 0;
+
+    /** Cancels requests of disconnected clients while running */
+    private DisconnectWatcher disconnectWatcher = null;
+
     /**
      * Constructs a WebServer using default settings.
      * Port: 8080, Web root: current directory, Max threads: 10.
@@ -132,7 +167,7 @@ public class WebServer {
             throws IllegalArgumentException {
         this.port = port;
         this.webRoot = validateWebRoot(webRoot);
-        this.pool = Executors.newFixedThreadPool(maxThreads);
+        this.maxThreads = maxThreads;
 
         if (sessionConfig == null)
             sessionConfig = new SessionConfig();
@@ -159,6 +194,16 @@ public class WebServer {
         running = true;
         if (router == null)
             router = new StaticRouter();
+        pool = (adaptivePoolConfig != null)
+                ? new AdaptiveThreadPool(adaptivePoolConfig, maxThreads)
+                : Executors.newFixedThreadPool(maxThreads);
+
+        StaticFileCache.configure(staticCacheConfig);
+        StaticFileCache cache = StaticFileCache.getInstance();
+        if (cache != null) {
+            cache.watch(webRoot);
+        }
+        ResponseCompressor.configure(compressionConfig);
 
         // Initialize JHP engine singleton if not already initialized
         if (!JhpEngine.isInitialized()) {
@@ -169,6 +214,13 @@ public class WebServer {
                 stop();
             }
         }
+        prepare(router);
+        if (workerPoolConfig != null) {
+            workerPools = new WorkerPools(workerPoolConfig);
+        }
+        if (disconnectCheckMillis > 0) {
+            disconnectWatcher = new DisconnectWatcher(disconnectCheckMillis);
+        }
 
         try {
             serverSocket = new ServerSocket(port);
@@ -179,7 +231,10 @@ public class WebServer {
             while (running) {
                 try {
                     Socket socket = serverSocket.accept();
-                    pool.submit(new ConnectionHandler(socket, webRoot, router, sessionManager));
+                    pool.submit(new ConnectionHandler(socket, webRoot, this::getRouter, sessionManager, pool,
+                            workerPools)
+                            .setRequestTimeoutMillis(requestTimeoutMillis)
+                            .setDisconnectWatcher(disconnectWatcher));
                 } catch (RejectedExecutionException e) {
                     Logger.err("Task rejected: " + e.getMessage());
                 } catch (SocketTimeoutException ignored) {
@@ -205,14 +260,34 @@ public class WebServer {
             Logger.err("Exception in server: " + e.getMessage());
         }
 
-        pool.shutdown();
-        try {
-            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+        ExecutorService pool = this.pool;
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Logger.err("Exception in server: " + e.getMessage());
                 pool.shutdownNow();
             }
-        } catch (InterruptedException e) {
-            Logger.err("Exception in server: " + e.getMessage());
-            pool.shutdownNow();
+        }
+
+        if (workerPools != null) {
+            workerPools.logStats();
+            workerPools.shutdown();
+            workerPools = null;
+        }
+
+        if (disconnectWatcher != null) {
+            disconnectWatcher.close();
+            disconnectWatcher = null;
+        }
+
+        StaticFileCache cache = StaticFileCache.getInstance();
+        if (cache != null) {
+            cache.logStats();
+            cache.close();
         }
 
         // Shutdown session manager to stop cleanup scheduler and close storage
@@ -222,19 +297,72 @@ public class WebServer {
     }
 
     /**
-     * Sets a custom router for handling requests.
+     * Sets a custom router for handling requests. If the server is running,
+     * the router is swapped in as by {@link #swapRouter(Router, String...)}.
      *
      * @param router the router to use
      * @return this WebServer instance for chaining
-     * @throws IllegalStateException if the server has already started
      */
-    public WebServer setRouter(Router router) throws IllegalStateException {
+    public WebServer setRouter(Router router) {
         if (running)
-            throw new IllegalStateException("Cannot set router after server has started.");
+            return swapRouter(router);
+        this.router = router;
+        return this;
+    }
+
+    /**
+     * Replaces the router of a running server without dropping connections.
+     * The new router is frozen, its web roots are prepared, and the given
+     * paths are requested once to warm it up before it is published. Requests
+     * already being handled finish on the old router; every later request,
+     * including those on kept-alive connections, uses the new one.
+     *
+     * @param router      the new router
+     * @param warmupPaths GET paths resolved against the new router before the
+     *                    swap; their responses are discarded
+     * @return this WebServer instance for chaining
+     */
+    public WebServer swapRouter(Router router, String... warmupPaths) {
+        if (router == null)
+            router = new StaticRouter();
+        prepare(router);
+
+        for (String path : warmupPaths) {
+            try {
+                Request request = new Request("GET", path, "HTTP/1.1", new HashMap<>(), new HashMap<>());
+                HttpResponse response = router.resolve(request, webRoot);
+                response.release();
+            } catch (RuntimeException e) {
+                Logger.wrn("Router warm-up failed for " + path + ": " + e.getMessage());
+            }
+        }
+
+        Router previous = this.router;
         this.router = router;
+        if (previous != router)
+            Logger.log("Router swapped" + (warmupPaths.length > 0 ? " after warming " + warmupPaths.length + " paths" : ""));
         return this;
     }
 
+    /**
+     * Freezes a router and prepares the extra web roots it serves: watched by
+     * the static file cache, each with its own JHP engine.
+     */
+    private void prepare(Router router) {
+        router.freeze();
+        StaticFileCache cache = StaticFileCache.getInstance();
+        for (File root : router.getWebRoots()) {
+            if (cache != null) {
+                cache.watch(root);
+            }
+            try {
+                JhpEngine.initialize(root);
+            } catch (IOException e) {
+                Logger.err("Failed to initialize JHP engine for " + root + ": " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Gets the current router used by the server.
      *
@@ -244,6 +372,121 @@ public class WebServer {
         return router;
     }
 
+    /**
+     * Enables the in-memory static file cache with the given configuration.
+     *
+     * @param staticCacheConfig the cache configuration, or null to disable caching
+     * @return this WebServer instance for chaining
+     * @throws IllegalStateException if the server has already started
+     */
+    public WebServer setStaticCacheConfig(StaticCacheConfig staticCacheConfig) throws IllegalStateException {
+        if (running)
+            throw new IllegalStateException("Cannot configure static cache after server has started.");
+        this.staticCacheConfig = staticCacheConfig;
+        return this;
+    }
+
+    /**
+     * Enables gzip compression of dynamic responses (rendered templates, JSON).
+     *
+     * @param compressionConfig the compression configuration, or null to disable it
+     * @return this WebServer instance for chaining
+     * @throws IllegalStateException if the server has already started
+     */
+    public WebServer setCompressionConfig(CompressionConfig compressionConfig) throws IllegalStateException {
+        if (running)
+            throw new IllegalStateException("Cannot configure compression after server has started.");
+        this.compressionConfig = compressionConfig;
+        return this;
+    }
+
+    /**
+     * Lets the connection pool size itself between the configured bounds from
+     * measured throughput, service time and queueing, starting at the
+     * server's thread count. Resizes are logged.
+     *
+     * @param adaptivePoolConfig the bounds and targets, or null for a fixed
+     *                           pool of the server's thread count
+     * @return this WebServer instance for chaining
+     * @throws IllegalStateException if the server has already started
+     */
+    public WebServer setAdaptivePoolConfig(AdaptivePoolConfig adaptivePoolConfig) throws IllegalStateException {
+        if (running)
+            throw new IllegalStateException("Cannot configure the connection pool after server has started.");
+        this.adaptivePoolConfig = adaptivePoolConfig;
+        return this;
+    }
+
+    /**
+     * Handles requests on separate worker pools per request class (static,
+     * API, template), so expensive renders cannot starve static files. The
+     * server's own pool then only reads and writes connections.
+     *
+     * @param workerPoolConfig the pool configuration, or null to handle
+     *                         requests on the connection pool
+     * @return this WebServer instance for chaining
+     * @throws IllegalStateException if the server has already started
+     */
+    public WebServer setWorkerPoolConfig(WorkerPoolConfig workerPoolConfig) throws IllegalStateException {
+        if (running)
+            throw new IllegalStateException("Cannot configure worker pools after server has started.");
+        this.workerPoolConfig = workerPoolConfig;
+        return this;
+    }
+
+    /**
+     * Gives every request a deadline. Handlers can check it through the
+     * request; queued work, renders and asynchronous responses that run past
+     * it are abandoned with a 504.
+     *
+     * @param requestTimeoutMillis the time a request may take, or 0 for none
+     * @return this WebServer instance for chaining
+     * @throws IllegalStateException if the server has already started
+     */
+    public WebServer setRequestTimeoutMillis(long requestTimeoutMillis) throws IllegalStateException {
+        if (running)
+            throw new IllegalStateException("Cannot set the request timeout after server has started.");
+        if (requestTimeoutMillis < 0)
+            throw new IllegalArgumentException("Request timeout must not be negative.");
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Sets how often connections with a request in progress are checked for
+     * a disconnected client. A disconnected client's request is cancelled,
+     * and nothing is rendered, saved or sent for it. Off by default.
+     *
+     * <p>
+     * Each check reads from the connection with a 1ms timeout, one
+     * connection after another on a single thread. A client that half-closes
+     * its side after sending the request (e.g. {@code nc}-style or some
+     * HTTP/1.0 clients) looks disconnected and gets no response, so only
+     * enable this when clients keep their side open.
+     * </p>
+     *
+     * @param disconnectCheckMillis the check interval, or 0 to not check
+     * @return this WebServer instance for chaining
+     * @throws IllegalStateException if the server has already started
+     */
+    public WebServer setDisconnectCheckMillis(long disconnectCheckMillis) throws IllegalStateException {
+        if (running)
+            throw new IllegalStateException("Cannot set the disconnect check after server has started.");
+        if (disconnectCheckMillis < 0)
+            throw new IllegalArgumentException("Disconnect check interval must not be negative.");
+        this.disconnectCheckMillis = disconnectCheckMillis;
+        return this;
+    }
+
+    /**
+     * Gets the static file cache used by the server.
+     *
+     * @return the cache instance, or null if caching is disabled
+     */
+    public StaticFileCache getStaticFileCache() {
+        return StaticFileCache.getInstance();
+    }
+
     /**
      * Validates and converts a web root path string to a File object.
      *
@@ -0,0 +1,61 @@
+package com.hindbiswas.server.core;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration for separate worker pools per {@link RequestClass}.
+ * Provides builder-style API for configuring pool sizes and classification.
+ */
+public class WorkerPoolConfig {
+    private final Map<RequestClass, Integer> threads = new EnumMap<>(RequestClass.class);
+    private int maxQueued = 1000;
+    private RequestClassifier classifier = RequestClassifier.DEFAULT;
+
+    public WorkerPoolConfig() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        threads.put(RequestClass.STATIC, Math.max(2, cpus));
+        threads.put(RequestClass.API, Math.max(2, cpus * 2));
+        threads.put(RequestClass.TEMPLATE, Math.max(1, cpus / 2));
+    }
+
+    /**
+     * Sets the number of threads serving a request class.
+     */
+    public WorkerPoolConfig setThreads(RequestClass requestClass, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Worker pool needs at least one thread: " + count);
+        }
+        threads.put(requestClass, count);
+        return this;
+    }
+
+    /**
+     * Sets how many requests of one class may wait for a thread before
+     * further ones are answered with 503.
+     */
+    public WorkerPoolConfig setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+    /**
+     * Sets the classifier assigning requests to pools.
+     */
+    public WorkerPoolConfig setClassifier(RequestClassifier classifier) {
+        this.classifier = (classifier != null) ? classifier : RequestClassifier.DEFAULT;
+        return this;
+    }
+
+    public int getThreads(RequestClass requestClass) {
+        return threads.get(requestClass);
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public RequestClassifier getClassifier() {
+        return classifier;
+    }
+}
@@ -0,0 +1,81 @@
+package com.hindbiswas.server.core;
+
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.logger.Logger;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Worker pools per {@link RequestClass}. Connections are read and written on
+ * the server's pool; request handling is dispatched to the pool of the
+ * request's class, so a spike of renders cannot delay static files.
+ *
+ * <p>
+ * Precedence comes from the pools' sizes alone. Thread priorities are not
+ * used, since most JVMs on Linux ignore them.
+ * </p>
+ */
+public class WorkerPools implements Function<Request, Executor> {
+    private final Map<RequestClass, ThreadPoolExecutor> pools = new EnumMap<>(RequestClass.class);
+    private final RequestClassifier classifier;
+
+    public WorkerPools(WorkerPoolConfig config) {
+        this.classifier = config.getClassifier();
+        for (RequestClass requestClass : RequestClass.values()) {
+            int threads = config.getThreads(requestClass);
+            String prefix = requestClass.name().toLowerCase(Locale.ROOT) + "-worker-";
+            AtomicInteger counter = new AtomicInteger();
+            pools.put(requestClass, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(config.getMaxQueued()), r -> {
+                        Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }));
+        }
+    }
+
+    /**
+     * Returns the executor for a request's class.
+     *
+     * @param request the request
+     * @return the executor
+     */
+    @Override
+    public Executor apply(Request request) {
+        RequestClass requestClass = classifier.classify(request);
+        return pools.get(requestClass != null ? requestClass : RequestClass.API);
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor pool : pools.values()) {
+            pool.shutdown();
+        }
+        for (ThreadPoolExecutor pool : pools.values()) {
+            try {
+                if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void logStats() {
+        for (Map.Entry<RequestClass, ThreadPoolExecutor> entry : pools.entrySet()) {
+            ThreadPoolExecutor pool = entry.getValue();
+            Logger.log(String.format("%s pool: %d threads, %d active, %d queued, %d completed",
+                    entry.getKey(), pool.getPoolSize(), pool.getActiveCount(), pool.getQueue().size(),
+                    pool.getCompletedTaskCount()));
+        }
+    }
+}
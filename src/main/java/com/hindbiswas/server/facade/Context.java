@@ -6,15 +6,28 @@ import java.util.Map;
 import com.hindbiswas.server.http.Request;
 
 public class Context extends com.hindbiswas.jhp.Context {
+    /** The request rendered for, if any */
+    private Request request;
+
     public Context() {
         super();
     }
 
     public Context(Request req) {
         super();
+        this.request = req;
         injectRequest(req);
     }
 
+    /**
+     * Gets the request this context was built from.
+     *
+     * @return The request, or null if the context was built by hand
+     */
+    public Request getRequest() {
+        return request;
+    }
+
     @Override
     public void add(String key, Object value) {
         if (key != null && key.startsWith("__")) {
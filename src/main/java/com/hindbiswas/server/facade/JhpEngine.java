@@ -1,6 +1,9 @@
 package com.hindbiswas.server.facade;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.hindbiswas.jhp.engine.IssueHandleMode;
 import com.hindbiswas.jhp.engine.Settings;
@@ -18,6 +21,9 @@ import com.hindbiswas.server.util.HtmlUtils;
 public class JhpEngine extends com.hindbiswas.jhp.engine.JhpEngine {
     private static JhpEngine instance = null;
 
+    /** Engines by web root path, as given to the server or virtual host */
+    private static final Map<String, JhpEngine> engines = new ConcurrentHashMap<>();
+
     public final class RenderException extends RuntimeException {
         public RenderException(String content) {
             super((debug) ? content : "Something went wrong!");
@@ -51,6 +57,26 @@ public class JhpEngine extends com.hindbiswas.jhp.engine.JhpEngine {
             throw new IllegalStateException("JhpEngine already initialized");
         }
         instance = new JhpEngine(webServer.getWebRoot());
+        engines.put(new File(webServer.getWebRoot()).getPath(), instance);
+    }
+
+    /**
+     * Creates the engine for an additional web root, such as a virtual
+     * host's. Returns the existing engine if there already is one.
+     *
+     * @param webRoot The web root directory
+     * @return The engine for the web root
+     * @throws IOException If initialization fails
+     */
+    public static synchronized JhpEngine initialize(File webRoot) throws IOException {
+        String canonical = webRoot.getCanonicalPath();
+        JhpEngine engine = engines.get(canonical);
+        if (engine == null) {
+            engine = new JhpEngine(canonical);
+            engines.put(canonical, engine);
+        }
+        engines.put(webRoot.getPath(), engine);
+        return engine;
     }
 
     /**
@@ -62,6 +88,35 @@ public class JhpEngine extends com.hindbiswas.jhp.engine.JhpEngine {
         return instance;
     }
 
+    /**
+     * Get the engine for a web root, falling back to the singleton instance.
+     * 
+     * @param webRoot The web root a request is served from
+     * @return The JhpEngine instance, or null if not initialized
+     */
+    public static JhpEngine getInstance(File webRoot) {
+        JhpEngine engine = (webRoot != null) ? engines.get(webRoot.getPath()) : null;
+        return (engine != null) ? engine : instance;
+    }
+
+    /**
+     * Get the engine whose web root contains a file, falling back to the
+     * singleton instance.
+     * 
+     * @param canonicalPath The file's canonical path
+     * @return The JhpEngine instance, or null if not initialized
+     */
+    public static JhpEngine forFile(String canonicalPath) {
+        JhpEngine best = null;
+        for (JhpEngine engine : engines.values()) {
+            if (canonicalPath.startsWith(engine.webRoot + File.separator)
+                    && (best == null || engine.webRoot.length() > best.webRoot.length())) {
+                best = engine;
+            }
+        }
+        return (best != null) ? best : instance;
+    }
+
     /**
      * Check if the engine has been initialized.
      * 
@@ -161,6 +216,11 @@ public class JhpEngine extends com.hindbiswas.jhp.engine.JhpEngine {
         if (!(context instanceof Context)) {
             throw new IllegalArgumentException("Invalid context type");
         }
+        // Don't start rendering a page nobody will receive
+        Request request = ((Context) context).getRequest();
+        if (request != null) {
+            request.ensureActive();
+        }
         try {
             String result = super.render(pathTxt, context);
             return result;
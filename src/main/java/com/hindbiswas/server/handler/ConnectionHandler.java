@@ -1,9 +1,12 @@
 package com.hindbiswas.server.handler;
 
+import com.hindbiswas.server.compression.ResponseCompressor;
 import com.hindbiswas.server.http.Cookie;
 import com.hindbiswas.server.http.HttpResponse;
 import com.hindbiswas.server.http.HttpUtils;
 import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
+import com.hindbiswas.server.http.RequestContext;
 import com.hindbiswas.server.http.Response;
 import com.hindbiswas.server.logger.Logger;
 import com.hindbiswas.server.routing.Router;
@@ -13,11 +16,20 @@ import com.hindbiswas.server.session.SessionManager;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Handles an individual client connection to the server.
@@ -34,12 +46,34 @@ public class ConnectionHandler implements Runnable {
     /** The root directory from which static files will be served. */
     private final File webRoot;
 
-    /** The router used to handle the request and determine the response. */
-    private final Router router;
+    /** Supplies the router for each request, so a swapped router applies to kept-alive connections. */
+    private final Supplier<Router> routers;
 
     /** The session manager for handling sessions */
     private final SessionManager sessionManager;
 
+    /** Runs connections whose asynchronous response has completed; null to wait in place */
+    private final Executor resumer;
+
+    /** Picks the executor a request is handled on; null to handle it on the connection's thread */
+    private final Function<Request, Executor> dispatcher;
+
+    private PushbackInputStream in;
+    private OutputStream out;
+    private BufferedReader reader;
+
+    /** Time each request may take, or 0 for no deadline */
+    private long requestTimeoutMillis = 0;
+
+    /** Cancels requests whose client disconnects, if set */
+    private DisconnectWatcher disconnectWatcher;
+
+    /** The request being handled, probed for disconnects; null while reading */
+    private volatile Request processing;
+    private final Object probeLock = new Object();
+
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
     /**
      * Constructs a ConnectionHandler using a default static file router.
      *
@@ -59,12 +93,73 @@ public class ConnectionHandler implements Runnable {
      * @param router  The router used to handle requests.
      */
     public ConnectionHandler(Socket client, File webRoot, Router router, SessionManager sessionManager) {
-        if (router == null)
-            router = new StaticRouter();
+        this(client, webRoot, fixed(router), sessionManager, null);
+    }
+
+    /**
+     * Constructs a ConnectionHandler that looks up the current router for
+     * every request and releases its thread while an asynchronous response is
+     * pending.
+     *
+     * @param client  The socket for the client connection.
+     * @param webRoot The root directory for serving files.
+     * @param routers Supplies the router for each request.
+     * @param resumer Executor that continues the connection once the response
+     *                completes, or null to block the current thread instead.
+     */
+    public ConnectionHandler(Socket client, File webRoot, Supplier<Router> routers, SessionManager sessionManager,
+            Executor resumer) {
+        this(client, webRoot, routers, sessionManager, resumer, null);
+    }
+
+    /**
+     * Constructs a ConnectionHandler that hands request handling to the
+     * executor chosen for each request. The connection's thread is released
+     * meanwhile and the response is written on the resumer.
+     *
+     * @param client     The socket for the client connection.
+     * @param webRoot    The root directory for serving files.
+     * @param routers    Supplies the router for each request.
+     * @param resumer    Executor that continues the connection once the
+     *                   response completes.
+     * @param dispatcher Picks the executor for a request, or null to handle
+     *                   requests on the connection's thread.
+     */
+    public ConnectionHandler(Socket client, File webRoot, Supplier<Router> routers, SessionManager sessionManager,
+            Executor resumer, Function<Request, Executor> dispatcher) {
         this.client = client;
         this.webRoot = webRoot;
-        this.router = router;
+        this.routers = routers;
         this.sessionManager = sessionManager;
+        this.resumer = resumer;
+        this.dispatcher = (resumer != null) ? dispatcher : null;
+    }
+
+    /**
+     * Gives every request a deadline.
+     *
+     * @param requestTimeoutMillis the time a request may take, or 0 for none
+     * @return this handler
+     */
+    public ConnectionHandler setRequestTimeoutMillis(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Cancels requests when their client disconnects while they are handled.
+     *
+     * @param disconnectWatcher the watcher, or null to not detect disconnects
+     * @return this handler
+     */
+    public ConnectionHandler setDisconnectWatcher(DisconnectWatcher disconnectWatcher) {
+        this.disconnectWatcher = disconnectWatcher;
+        return this;
+    }
+
+    private static Supplier<Router> fixed(Router router) {
+        Router resolved = (router != null) ? router : new StaticRouter();
+        return () -> resolved;
     }
 
     /**
@@ -74,57 +169,259 @@ public class ConnectionHandler implements Runnable {
      */
     @Override
     public void run() {
-        try (InputStream in = client.getInputStream(); OutputStream out = client.getOutputStream()) {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-            boolean keepAlive = true;
+        boolean parked = false;
+        try {
+            in = new PushbackInputStream(client.getInputStream());
+            out = client.getOutputStream();
+            reader = new BufferedReader(new InputStreamReader(in));
 
-            client.setSoTimeout(10000); // Set read timeout to 10 seconds
+            client.setSoTimeout(READ_TIMEOUT_MILLIS);
+            if (disconnectWatcher != null)
+                disconnectWatcher.add(this);
 
-            while (keepAlive) {
-                HttpResponse response = null;
-                Request request = null;
+            parked = serve();
+        } catch (SocketTimeoutException e) {
+            Logger.dbg("[TIMEOUT]: " + client.getRemoteSocketAddress());
+        } catch (IOException e) {
+            Logger.err("[ERROR]: " + e.getMessage());
+        } finally {
+            if (!parked)
+                close();
+        }
+    }
 
-                try {
-                    // Request now handles session retrieval automatically
-                    request = new Request(reader, sessionManager);
-
-                    Logger.log(request.method + " " + request.path);
-                    Logger.dbg("[INCOMING]: " + request);
-
-                    response = router.resolve(request, webRoot);
-
-                    // Automatically save session if it exists (persist any modifications)
-                    request.saveSession();
-
-                    // Set session cookie if session exists
-                    Cookie sessionCookie = request.getSessionCookie();
-                    if (sessionCookie != null) {
-                        response.addCookie(sessionCookie);
-                    }
-                    Logger.dbg("[OUTGOING]: " + response);
-                } catch (IOException e) {
-                    response = Response.error(400).toHttpResponse();
-                    HttpUtils.sendResponse(out, null, response);
-                    break;
+    /**
+     * Serves requests until the connection should close or a response is
+     * pending.
+     *
+     * @return true if the connection was parked on a pending response and
+     *         must stay open
+     */
+    private boolean serve() throws IOException {
+        while (true) {
+            HttpResponse response = null;
+            Request request = null;
+
+            synchronized (probeLock) {
+                processing = null; // No probing while the next request is read
+            }
+
+            try {
+                // Request now handles session retrieval automatically
+                request = new Request(reader, sessionManager);
+                request.getContext().mark("read");
+                request.setDeadline(requestTimeoutMillis);
+                processing = request;
+
+                Logger.log(request.method + " " + request.path);
+                Logger.dbg("[INCOMING]: " + request);
+
+                response = resolve(request);
+            } catch (IOException e) {
+                response = Response.error(400).toHttpResponse();
+                HttpUtils.sendResponse(out, null, response);
+                return false;
+            }
+
+            CompletableFuture<HttpResponse> deferred = response.getDeferred();
+            if (deferred != null) {
+                if (request.hasDeadline()) {
+                    deferred = deferred.orTimeout(request.getRemainingMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (resumer != null) {
+                    park(request, response, deferred);
+                    return true;
                 }
+                response = response.complete(await(request, deferred));
+            }
 
-                HttpUtils.sendResponse(out, request, response);
+            if (request.isCancelled()) {
+                Logger.dbg("[ABANDONED]: " + request.method + " " + request.path);
+                response.release(); // Not sent, so sendResponse won't release it
+                return false;
+            }
+            if (!finish(request, response)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Resolves a request with the current router, on the executor the
+     * dispatcher picks for it if there is one.
+     */
+    private HttpResponse resolve(Request request) {
+        Router router = routers.get();
+        Executor executor = (dispatcher != null) ? dispatcher.apply(request) : null;
+        RequestContext context = request.getContext();
+        if (executor == null) {
+            return context.call(() -> router.resolve(request, webRoot));
+        }
+        try {
+            return HttpResponse.deferred(CompletableFuture
+                    .supplyAsync(() -> context.call(() -> {
+                        request.ensureActive(); // Skip work abandoned while queued
+                        return router.resolve(request, webRoot);
+                    }), executor)
+                    .thenCompose(ConnectionHandler::settle));
+        } catch (RejectedExecutionException e) {
+            Logger.wrn("Worker pool saturated, rejecting " + request.method + " " + request.path);
+            return Response.error(503).toHttpResponse();
+        }
+    }
+
+    /** Waits out a deferred response, keeping what was set on its placeholder */
+    private static CompletableFuture<HttpResponse> settle(HttpResponse response) {
+        CompletableFuture<HttpResponse> deferred = response.getDeferred();
+        if (deferred == null) {
+            return CompletableFuture.completedFuture(response);
+        }
+        return deferred.thenCompose(ConnectionHandler::settle).thenApply(response::complete);
+    }
 
-                // Check for Connection header to determine if the connection should be closed
-                String connHeader = request.getHeader("connection");
-                if ("close".equalsIgnoreCase(connHeader) || request.isHttp10()) {
-                    keepAlive = false;
+    /**
+     * Releases the current thread until the response completes, then
+     * continues the connection on the resumer.
+     */
+    private void park(Request request, HttpResponse placeholder, CompletableFuture<HttpResponse> deferred) {
+        // Stops waiting only; the handler's own future is left to Request.onCancel listeners
+        request.onCancel(() -> deferred.cancel(true));
+        deferred.whenComplete((result, error) -> {
+            try {
+                resumer.execute(() -> resume(request, placeholder, result, error));
+            } catch (RejectedExecutionException e) {
+                if (result != null) {
+                    result.release();
+                }
+                close(); // Server is shutting down
+            }
+        });
+    }
+
+    private void resume(Request request, HttpResponse placeholder, HttpResponse result, Throwable error) {
+        boolean parked = false;
+        try {
+            if (request.isCancelled()) {
+                Logger.dbg("[ABANDONED]: " + request.method + " " + request.path);
+                if (result != null) {
+                    result.release(); // Not sent, so sendResponse won't release it
                 }
+                return;
             }
+            if (error != null || result == null) {
+                result = failure(request, error);
+            }
+            parked = finish(request, placeholder.complete(result)) && serve();
         } catch (SocketTimeoutException e) {
             Logger.dbg("[TIMEOUT]: " + client.getRemoteSocketAddress());
         } catch (IOException e) {
             Logger.err("[ERROR]: " + e.getMessage());
         } finally {
+            if (!parked)
+                close();
+        }
+    }
+
+    private static HttpResponse await(Request request, CompletableFuture<HttpResponse> deferred) {
+        try {
+            HttpResponse result = deferred.join();
+            if (result != null)
+                return result;
+            return failure(request, null);
+        } catch (CompletionException | CancellationException e) {
+            return failure(request, e);
+        }
+    }
+
+    /** The response for a request whose asynchronous handling failed */
+    private static HttpResponse failure(Request request, Throwable error) {
+        Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause()
+                : error;
+        if (cause instanceof TimeoutException
+                || (cause instanceof RequestCancelledException cancelled && cancelled.isExpired())) {
+            Logger.wrn("Request deadline exceeded for " + request.method + " " + request.path);
+            return Response.error(504).toHttpResponse();
+        }
+        Logger.err("Async response failed for " + request.method + " " + request.path + ": " + cause);
+        return Response.error(500).toHttpResponse();
+    }
+
+    /**
+     * Peeks at the socket while a request is handled and cancels the request
+     * if the client has closed the connection. Called by the
+     * {@link DisconnectWatcher}.
+     */
+    void probe() {
+        synchronized (probeLock) {
+            Request request = processing;
+            if (request == null || request.isCancelled()) {
+                return;
+            }
             try {
-                client.close();
-            } catch (IOException ignored) {
+                if (in.available() > 0) {
+                    return; // Pipelined data waiting: the client is still there
+                }
+                client.setSoTimeout(1);
+                int next = in.read();
+                if (next < 0) {
+                    Logger.dbg("[DISCONNECTED]: " + client.getRemoteSocketAddress());
+                    request.cancel();
+                } else {
+                    in.unread(next);
+                }
+            } catch (SocketTimeoutException e) {
+                // Nothing to read: still connected
+            } catch (IOException e) {
+                request.cancel();
+            } finally {
+                try {
+                    client.setSoTimeout(READ_TIMEOUT_MILLIS);
+                } catch (IOException ignored) {
+                }
             }
         }
     }
+
+    /**
+     * Saves the session, finalizes and sends the response.
+     *
+     * @return true if the connection should be kept alive
+     */
+    private boolean finish(Request request, HttpResponse response) throws IOException {
+        RequestContext context = request.getContext();
+        context.mark("resolve");
+
+        // Automatically save session if it exists (persist any modifications)
+        request.saveSession();
+        context.mark("session");
+
+        // Set session cookie if session exists
+        Cookie sessionCookie = request.getSessionCookie();
+        if (sessionCookie != null) {
+            response.addCookie(sessionCookie);
+        }
+
+        ResponseCompressor compressor = ResponseCompressor.getInstance();
+        if (compressor != null) {
+            compressor.apply(request, response);
+        }
+        Logger.dbg("[OUTGOING]: " + response);
+
+        HttpUtils.sendResponse(out, request, response);
+        context.mark("send");
+        Logger.dbg("[TIMING]: " + context);
+
+        // Check for Connection header to determine if the connection should be closed
+        String connHeader = request.getHeader("connection");
+        return !("close".equalsIgnoreCase(connHeader) || request.isHttp10());
+    }
+
+    private void close() {
+        if (disconnectWatcher != null)
+            disconnectWatcher.remove(this);
+        try {
+            client.close();
+        } catch (IOException ignored) {
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package com.hindbiswas.server.handler;
+
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically probes connections whose request is still being handled and
+ * cancels the request when the client has closed the connection, so
+ * abandoned handlers, renders and session saves can stop early.
+ *
+ * <p>
+ * A probe is a read from the socket with a 1ms timeout: end of stream or a
+ * reset means the client is gone; pipelined bytes are pushed back for the
+ * next request. Probes run one after another, so a sweep takes up to 1ms
+ * per request in progress; requests that finish before the first probe
+ * never pay for it. A client that half-closes its side after sending the
+ * request is indistinguishable from one that has gone away.
+ * </p>
+ */
+public class DisconnectWatcher implements Closeable {
+    private final Set<ConnectionHandler> connections = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Starts watching.
+     *
+     * @param intervalMillis time between probes of a connection
+     */
+    public DisconnectWatcher(long intervalMillis) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "disconnect-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probeAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void add(ConnectionHandler connection) {
+        connections.add(connection);
+    }
+
+    void remove(ConnectionHandler connection) {
+        connections.remove(connection);
+    }
+
+    private void probeAll() {
+        for (ConnectionHandler connection : connections) {
+            try {
+                connection.probe();
+            } catch (RuntimeException e) {
+                Logger.err("Disconnect probe failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getWatchedCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        connections.clear();
+    }
+}
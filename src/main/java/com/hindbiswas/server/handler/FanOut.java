@@ -0,0 +1,311 @@
+package com.hindbiswas.server.handler;
+
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
+import com.hindbiswas.server.http.RequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent parts of a request concurrently, so a handler that
+ * aggregates several lookups takes as long as the slowest one instead of
+ * their sum.
+ *
+ * <p>
+ * Subtasks run on virtual threads with the request's context bound. A scope
+ * is structured: subtasks are forked and joined by the thread that opened
+ * it, and none outlives it. The first failure cancels (interrupts) the
+ * remaining subtasks; so do the request's deadline and the client
+ * disconnecting.
+ * </p>
+ *
+ * <pre>{@code
+ * router.get("/dashboard", req -> {
+ *     try (FanOut scope = FanOut.open(req)) {
+ *         FanOut.Subtask<User> user = scope.fork(() -> users.find(id));
+ *         FanOut.Subtask<List<Order>> orders = scope.fork(() -> orders.recent(id));
+ *         scope.join();
+ *         return Response.json(render(user.get(), orders.get()));
+ *     }
+ * });
+ * }</pre>
+ */
+public final class FanOut implements AutoCloseable {
+
+    /** Thrown by {@link #join()} when a subtask fails; the cause is its error */
+    public static final class FailedException extends RuntimeException {
+        private FailedException(Throwable cause) {
+            super("Subtask failed: " + cause, cause);
+        }
+    }
+
+    /**
+     * A forked subtask. Its result is available once the scope has joined.
+     */
+    public static final class Subtask<T> implements Supplier<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private Thread thread;
+
+        private Subtask() {
+        }
+
+        /**
+         * Gets the subtask's result.
+         *
+         * @throws IllegalStateException if the subtask did not complete
+         *                               successfully
+         */
+        @Override
+        public T get() {
+            if (!result.isDone() || result.isCompletedExceptionally()) {
+                throw new IllegalStateException("Subtask has not completed successfully");
+            }
+            return result.join();
+        }
+
+        public boolean isDone() {
+            return result.isDone();
+        }
+    }
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final Request request;
+    private final RequestContext context;
+    private final Thread owner = Thread.currentThread();
+
+    /** Deadline as a {@link System#nanoTime()} value; 0 if there is none */
+    private final long deadline;
+
+    private final List<Subtask<?>> subtasks = new ArrayList<>();
+
+    /** Completed with the first subtask failure, or when the scope is cancelled */
+    private final CompletableFuture<Throwable> failure = new CompletableFuture<>();
+
+    private volatile boolean cancelled = false;
+    private boolean joined = false;
+    private boolean closed = false;
+
+    private FanOut(Request request, long timeoutMillis) {
+        this.request = request;
+        this.context = (request != null) ? request.getContext() : RequestContext.current();
+
+        long millis = (request != null) ? request.getRemainingMillis() : Long.MAX_VALUE;
+        if (timeoutMillis > 0) {
+            millis = Math.min(millis, timeoutMillis);
+        }
+        this.deadline = (millis == Long.MAX_VALUE) ? 0 : Math.max(1, System.nanoTime() + millis * 1_000_000);
+
+        if (request != null) {
+            request.onCancel(this::cancel);
+        }
+    }
+
+    /**
+     * Opens a scope bounded by the request's deadline.
+     *
+     * @param request the request being handled, or null for none
+     * @return the scope, to be closed by the caller
+     */
+    public static FanOut open(Request request) {
+        return new FanOut(request, 0);
+    }
+
+    /**
+     * Opens a scope bounded by the request's deadline and a timeout,
+     * whichever comes first.
+     *
+     * @param request       the request being handled, or null for none
+     * @param timeoutMillis time the subtasks may take, or 0 for no limit
+     * @return the scope, to be closed by the caller
+     */
+    public static FanOut open(Request request, long timeoutMillis) {
+        return new FanOut(request, timeoutMillis);
+    }
+
+    /**
+     * Runs tasks concurrently and returns their results in order.
+     *
+     * @param request the request being handled, or null for none
+     * @param tasks   the tasks
+     * @return the results
+     * @throws FailedException           if a task fails
+     * @throws RequestCancelledException if the request is cancelled or its
+     *                                   deadline passes first
+     */
+    public static <T> List<T> all(Request request, List<? extends Callable<? extends T>> tasks) {
+        try (FanOut scope = open(request)) {
+            List<Subtask<T>> forked = new ArrayList<>(tasks.size());
+            for (Callable<? extends T> task : tasks) {
+                forked.add(scope.fork(task));
+            }
+            scope.join();
+
+            List<T> results = new ArrayList<>(forked.size());
+            for (Subtask<T> subtask : forked) {
+                results.add(subtask.get());
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Starts a subtask.
+     *
+     * @param task the subtask's work
+     * @return the subtask, whose result is available after {@link #join()}
+     * @throws IllegalStateException if the scope was joined or closed, or is
+     *                               used from another thread
+     */
+    public <T> Subtask<T> fork(Callable<? extends T> task) {
+        checkOwner();
+        if (joined || closed) {
+            throw new IllegalStateException("Cannot fork after the scope was joined or closed");
+        }
+
+        Subtask<T> subtask = new Subtask<>();
+        Runnable body = () -> {
+            try {
+                subtask.result.complete(task.call());
+            } catch (Throwable e) {
+                fail(e); // Before completing, so a join woken by it sees the failure
+                subtask.result.completeExceptionally(e);
+            }
+        };
+        subtask.thread = Thread.ofVirtual()
+                .name("fan-out-" + threadCount.incrementAndGet())
+                .unstarted((context != null) ? () -> context.call(() -> {
+                    body.run();
+                    return null;
+                }) : body);
+        synchronized (subtasks) {
+            subtasks.add(subtask);
+            if (cancelled) {
+                subtask.result.cancel(false);
+            } else {
+                subtask.thread.start();
+            }
+        }
+        return subtask;
+    }
+
+    /**
+     * Waits for all subtasks to complete. Returns early, cancelling the rest,
+     * if one fails, the deadline passes or the request is cancelled.
+     *
+     * @throws FailedException           if a subtask failed
+     * @throws RequestCancelledException if the deadline passed or the request
+     *                                   was cancelled
+     */
+    public void join() {
+        checkOwner();
+        joined = true;
+
+        CompletableFuture<Object> done = CompletableFuture.anyOf(CompletableFuture.allOf(results()), failure);
+
+        try {
+            if (deadline == 0) {
+                done.get();
+            } else {
+                done.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            cancel();
+            throw new RequestCancelledException("Subtasks ran past the deadline", true);
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new RequestCancelledException("Interrupted while joining subtasks", false);
+        } catch (ExecutionException e) {
+            // A subtask failed or was cancelled; reported below
+        }
+
+        Throwable error = failure.getNow(null);
+        if (error == null && !cancelled) {
+            return;
+        }
+        cancel();
+        if (request != null) {
+            request.ensureActive(); // Report a cancelled request as such
+        }
+        if (error == null) {
+            throw new RequestCancelledException("Subtasks were cancelled", false);
+        }
+        throw (error instanceof RequestCancelledException cancelledError)
+                ? cancelledError
+                : new FailedException(error);
+    }
+
+    /**
+     * Cancels the subtasks still running by interrupting them.
+     */
+    public void cancel() {
+        cancelled = true;
+        failure.complete(null);
+        for (Subtask<?> subtask : snapshot()) {
+            if (!subtask.result.isDone() && subtask.thread.isAlive()) {
+                subtask.thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Cancels the subtasks still running and waits for them to finish, so
+     * that no subtask outlives the scope.
+     */
+    @Override
+    public void close() {
+        checkOwner();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!joined || !CompletableFuture.allOf(results()).isDone()) {
+            cancel();
+        }
+
+        boolean interrupted = false;
+        for (Subtask<?> subtask : snapshot()) {
+            while (subtask.thread.isAlive()) {
+                try {
+                    subtask.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fail(Throwable error) {
+        if (!cancelled) {
+            failure.complete(error);
+        }
+    }
+
+    private CompletableFuture<?>[] results() {
+        return snapshot().stream().map(subtask -> subtask.result).toArray(CompletableFuture<?>[]::new);
+    }
+
+    private List<Subtask<?>> snapshot() {
+        synchronized (subtasks) {
+            return new ArrayList<>(subtasks);
+        }
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("FanOut scope used outside the thread that opened it");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.hindbiswas.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * BodyWriter: Streams a response body directly to the client instead of
+ * materializing it as a byte array first.
+ */
+@FunctionalInterface
+public interface BodyWriter {
+
+    void writeTo(OutputStream out) throws IOException;
+}
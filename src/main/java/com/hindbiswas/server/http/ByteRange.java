@@ -0,0 +1,141 @@
+package com.hindbiswas.server.http;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A single satisfiable byte range of a representation, as requested by a
+ * {@code Range: bytes=...} header. Both ends are inclusive.
+ *
+ * @param start first byte offset
+ * @param end   last byte offset
+ */
+public record ByteRange(long start, long end) {
+
+    /** Upper bound on ranges honored per request; larger sets are ignored */
+    public static final int MAX_RANGES = 16;
+
+    /**
+     * Returns the number of bytes covered by the range.
+     *
+     * @return the range length
+     */
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Formats the range as a Content-Range header value.
+     *
+     * @param total the full length of the representation
+     * @return the header value (e.g., "bytes 0-499/1234")
+     */
+    public String toContentRange(long total) {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+    /**
+     * Parses a Range header against a representation of the given length.
+     * Positions too large for a long are treated as the largest long, so they
+     * clamp to the end or are unsatisfiable. Overlapping or adjacent ranges
+     * are coalesced, as RFC 9110 allows.
+     *
+     * @param header the Range header value
+     * @param length the full length of the representation
+     * @return the satisfiable ranges, an empty list if none are satisfiable
+     *         (416), or null if the header is malformed or should be ignored
+     */
+    public static List<ByteRange> parse(String header, long length) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // Suffix range: the final N bytes
+                    long suffix = parsePosition(last);
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                    continue;
+                }
+
+                long start = parsePosition(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : parsePosition(last);
+                if (end < start) {
+                    return null;
+                }
+                if (start < length) {
+                    ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    /**
+     * Parses a byte position: digits only, saturating at
+     * {@link Long#MAX_VALUE}.
+     */
+    private static long parsePosition(String digits) {
+        if (digits.isEmpty()) {
+            throw new NumberFormatException("Empty byte position");
+        }
+        long value = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid byte position: " + digits);
+            }
+            value = (value > (Long.MAX_VALUE - digit) / 10) ? Long.MAX_VALUE : value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Merges overlapping or adjacent ranges, so a client cannot make the
+     * same bytes be sent many times. Ranges that do not touch keep their
+     * requested order.
+     */
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return (merged.size() == ranges.size()) ? ranges : merged;
+    }
+}
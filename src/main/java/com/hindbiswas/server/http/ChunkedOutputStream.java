@@ -0,0 +1,59 @@
+package com.hindbiswas.server.http;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames everything written to it using HTTP/1.1 chunked transfer coding.
+ * Call {@link #finish()} to write the terminating zero-length chunk; closing
+ * this stream does not close the underlying socket stream.
+ */
+public class ChunkedOutputStream extends FilterOutputStream {
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private boolean finished = false;
+
+    public ChunkedOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Chunked stream already finished");
+        }
+        if (len == 0) {
+            return; // A zero-length chunk would end the body
+        }
+        out.write(Integer.toHexString(len).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(b, off, len);
+        out.write(CRLF);
+    }
+
+    /**
+     * Writes the last chunk. Safe to call more than once.
+     *
+     * @throws IOException if writing fails
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            out.write(LAST_CHUNK);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        flush();
+    }
+}
@@ -0,0 +1,143 @@
+package com.hindbiswas.server.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, pre-encoded error pages, rendered once per status code in HTML and
+ * JSON together with their entity headers. Error responses reuse these bytes,
+ * so a burst of errors costs only the write.
+ *
+ * <p>
+ * Templates may use the placeholders {@code {code}} and {@code {message}}.
+ * Changing a template discards every rendered page. The returned arrays are
+ * shared and must not be modified.
+ * </p>
+ */
+public final class ErrorResponses {
+    public static final String DEFAULT_HTML_TEMPLATE = "<html><head><title>{code} {message}</title></head>"
+            + "<body><h1>{code} {message}</h1></body></html>";
+    public static final String DEFAULT_JSON_TEMPLATE = "{\"error\": \"{message}\", \"code\": {code}}";
+
+    /**
+     * The rendered variants for one status code.
+     *
+     * @param html        the HTML page
+     * @param htmlHeaders Content-Type and Content-Length lines for the HTML page
+     * @param json        the JSON body
+     * @param jsonHeaders Content-Type and Content-Length lines for the JSON body
+     */
+    private record Page(byte[] html, byte[] htmlHeaders, byte[] json, byte[] jsonHeaders) {
+    }
+
+    private static volatile String htmlTemplate = DEFAULT_HTML_TEMPLATE;
+    private static volatile String jsonTemplate = DEFAULT_JSON_TEMPLATE;
+    private static volatile Map<Integer, Page> pages = new ConcurrentHashMap<>();
+
+    private ErrorResponses() {
+    }
+
+    /**
+     * Replaces the template used for HTML error pages.
+     *
+     * @param template the template, or null for the default
+     */
+    public static synchronized void setHtmlTemplate(String template) {
+        htmlTemplate = (template != null) ? template : DEFAULT_HTML_TEMPLATE;
+        pages = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Replaces the template used for JSON error bodies.
+     *
+     * @param template the template, or null for the default
+     */
+    public static synchronized void setJsonTemplate(String template) {
+        jsonTemplate = (template != null) ? template : DEFAULT_JSON_TEMPLATE;
+        pages = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the shared HTML error page for a status code.
+     *
+     * @param statusCode the status code
+     * @return the page bytes; must not be modified
+     */
+    public static byte[] html(int statusCode) {
+        return page(statusCode).html();
+    }
+
+    /**
+     * Returns the shared JSON error body for a status code.
+     *
+     * @param statusCode the status code
+     * @return the body bytes; must not be modified
+     */
+    public static byte[] json(int statusCode) {
+        return page(statusCode).json();
+    }
+
+    /**
+     * Returns the pre-encoded Content-Type and Content-Length lines for a body,
+     * if it is one of the shared pages for the status code.
+     *
+     * @param statusCode the status code
+     * @param body       the body about to be sent
+     * @return the header bytes, or null if the body is not a shared page
+     */
+    public static byte[] encodedHeaders(int statusCode, byte[] body) {
+        if (!HttpUtils.isStatusCodeSupported(statusCode)) {
+            return null; // Pages for these are rendered per call, never shared
+        }
+        Page page = page(statusCode);
+        if (body == page.html()) {
+            return page.htmlHeaders();
+        }
+        if (body == page.json()) {
+            return page.jsonHeaders();
+        }
+        return null;
+    }
+
+    /**
+     * Renders the HTML template into a fresh array, for callers that need
+     * their own copy.
+     *
+     * @param statusCode the status code
+     * @return the rendered page
+     */
+    static byte[] renderHtml(int statusCode) {
+        return render(htmlTemplate, statusCode);
+    }
+
+    private static Page page(int statusCode) {
+        Map<Integer, Page> current = pages;
+        Page page = current.get(statusCode);
+        if (page != null) {
+            return page;
+        }
+
+        byte[] html = render(htmlTemplate, statusCode);
+        byte[] json = render(jsonTemplate, statusCode);
+        page = new Page(html, entityHeaders("text/html", html), json, entityHeaders("application/json", json));
+        if (HttpUtils.isStatusCodeSupported(statusCode)) {
+            Page previous = current.putIfAbsent(statusCode, page);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return page;
+    }
+
+    private static byte[] render(String template, int statusCode) {
+        return template.replace("{code}", String.valueOf(statusCode))
+                .replace("{message}", HttpUtils.getStatusMessage(statusCode))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] entityHeaders(String mimeType, byte[] body) {
+        return ("Content-Type: " + HttpUtils.formatContentType(mimeType) + "\r\n"
+                + "Content-Length: " + body.length + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
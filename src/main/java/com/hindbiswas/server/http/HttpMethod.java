@@ -0,0 +1,43 @@
+package com.hindbiswas.server.http;
+
+/**
+ * HTTP request methods known to the server. Parsed once per request so
+ * routing can index by ordinal instead of comparing strings.
+ */
+public enum HttpMethod {
+    GET, HEAD, POST, PUT, PATCH, DELETE, OPTIONS, TRACE, CONNECT;
+
+    private static final HttpMethod[] VALUES = values();
+
+    /**
+     * Parses a method token, ignoring case.
+     *
+     * @param method the method from the request line
+     * @return the method, or null if it is not a known method
+     */
+    public static HttpMethod of(String method) {
+        if (method == null) {
+            return null;
+        }
+        for (HttpMethod value : VALUES) {
+            if (value.name().equalsIgnoreCase(method)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of methods, for arrays indexed by ordinal.
+     */
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * Returns the method with the given ordinal.
+     */
+    public static HttpMethod at(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -1,18 +1,28 @@
 package com.hindbiswas.server.http;
 
+import com.hindbiswas.server.cache.CachedFile;
+import com.hindbiswas.server.cache.StaticFileCache;
+import com.hindbiswas.server.cache.StaticIndex;
 import com.hindbiswas.server.facade.JhpEngine;
 import com.hindbiswas.server.logger.Logger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Represents an HTTP response to be sent to the client.
@@ -27,6 +37,26 @@ public class HttpResponse {
     private Map<String, String> headers = new HashMap<>();
     private List<Cookie> cookies = new ArrayList<>();
 
+    /** Body held in a (possibly off-heap) buffer instead of {@link #body} */
+    private ByteBuffer bodyBuffer;
+
+    /** Pre-encoded entity header lines for {@link #bodyBuffer} */
+    private byte[] encodedHeaders;
+
+    /** Cache entry backing {@link #bodyBuffer}, released once the response is sent */
+    private CachedFile cachedFile;
+
+    /** Streams the body when it is not held in memory */
+    private BodyWriter bodyWriter;
+
+    /** Number of bytes {@link #bodyWriter} will write, or -1 to send it chunked */
+    private long bodyWriterLength;
+
+    /** Final response of an asynchronous handler; this one is a placeholder */
+    private CompletableFuture<HttpResponse> deferred;
+
+    private static final int WRITE_CHUNK_SIZE = 64 * 1024;
+
     /**
      * Creates a custom HTTP response with status, body, and MIME type.
      *
@@ -92,12 +122,18 @@ public class HttpResponse {
      * @param webRoot The base directory for serving files.
      */
     public HttpResponse(Request request, File webRoot) {
-        File resource;
-        String path = (request.path.startsWith("/")) ? request.path.substring(1) : request.path;
+        ResolvedPath resolved;
+        StaticIndex.Asset asset;
         try {
-            String decoded = URLDecoder.decode(path, "UTF-8");
-            File raw = new File(webRoot, decoded);
-            resource = HttpUtils.indexIfDirectory(raw.getCanonicalFile());
+            StaticFileCache cache = StaticFileCache.getInstance();
+            asset = (cache != null) ? cache.findIndexed(request.path, webRoot) : null;
+            if (asset != null) {
+                resolved = asset.resolved();
+            } else {
+                resolved = (cache != null)
+                        ? cache.resolve(request.path, webRoot)
+                        : ResolvedPath.resolve(request.path, webRoot);
+            }
         } catch (UnsupportedEncodingException e) {
             this.statusCode = 500;
             this.statusMessage = HttpUtils.getStatusMessage(this.statusCode);
@@ -110,51 +146,35 @@ public class HttpResponse {
             return;
         }
 
-        if (!HttpUtils.ensureResourceUnderWebRoot(resource, webRoot)) {
+        File resource = resolved.resource();
+        if (!resolved.underWebRoot()) {
             this.statusCode = 403;
         } else if (request.method == null || !HttpUtils.validateMethod(request.method)) {
             this.statusCode = 405;
-        } else if (!HttpUtils.ensureResourceExists(resource)) {
+        } else if (!resolved.exists()) {
             this.statusCode = 404;
         } else {
             this.statusCode = 200;
-            this.mimeType = HttpUtils.guessMime(resource.getName());
+            this.mimeType = resolved.mimeType();
             try {
-                if (request.method.equals("HEAD")) {
+                // Check if this is a .jhp file
+                JhpEngine jhpEngine = JhpEngine.getInstance(webRoot);
+                if (!"application/x-jhp".equals(this.mimeType) || jhpEngine == null) {
+                    serveFile(request, resource, asset);
+                } else if (request.method.equals("HEAD")) {
                     this.body = new byte[0];
                 } else {
-                    // Check if this is a .jhp file
-                    JhpEngine jhpEngine = JhpEngine.getInstance();
-                    if ("application/x-jhp".equals(this.mimeType) && jhpEngine != null) {
-                        // Render the JHP file
-                        try {
-                            // Calculate relative path from webroot
-                            String filePath = resource.getCanonicalPath();
-                            String webRootPath = webRoot.getCanonicalPath();
-                            
-                            if (!filePath.startsWith(webRootPath)) {
-                                throw new IOException("File is not under web root");
-                            }
-                            
-                            String relativePath = filePath.substring(webRootPath.length());
-                            if (relativePath.startsWith("/") || relativePath.startsWith("\\")) {
-                                relativePath = relativePath.substring(1);
-                            }
-                            
-                            String rendered = jhpEngine.render(relativePath, request);
-                            this.body = rendered.getBytes(StandardCharsets.UTF_8);
-                            this.mimeType = "text/html"; // Change MIME type to HTML after rendering
-                        } catch (Exception e) {
-                            this.statusCode = 500;
-                            String errorMsg = (e.getMessage() != null && !e.getMessage().isEmpty())
-                                    ? e.getMessage()
-                                    : "JHP rendering failed";
-                            Logger.err("JHP rendering failed for " + request.path + ": " + e.getMessage());
-                            this.body = errorMsg.getBytes(StandardCharsets.UTF_8);
-                            this.mimeType = "text/html";
-                        }
-                    } else {
-                        this.body = Files.readAllBytes(resource.toPath());
+                    // Render the JHP file
+                    try {
+                        String rendered = jhpEngine.render(resolved.relativePath(), request);
+                        this.body = rendered.getBytes(StandardCharsets.UTF_8);
+                        this.mimeType = "text/html"; // Change MIME type to HTML after rendering
+                    } catch (Exception e) {
+                        // The detail is logged only: it may hold paths or template source
+                        this.statusCode = 500;
+                        Logger.err("JHP rendering failed for " + request.path + ": " + e.getMessage());
+                        this.body = null; // Shared error page
+                        this.mimeType = "text/html";
                     }
                 }
             } catch (IOException e) {
@@ -166,6 +186,273 @@ public class HttpResponse {
         this.statusMessage = HttpUtils.getStatusMessage(this.statusCode);
     }
 
+    /**
+     * Constructs a response for a file that is already held in memory, such as
+     * an entry of a packed asset bundle. Handles conditional, range and gzip
+     * requests exactly like files served from the web root.
+     *
+     * @param request  The parsed HTTP request object.
+     * @param identity The file's unencoded entry.
+     * @param gzip     The file's gzip variant, or null if it has none.
+     */
+    public HttpResponse(Request request, CachedFile identity, CachedFile gzip) {
+        if (request.method == null || !HttpUtils.validateMethod(request.method)) {
+            this.statusCode = 405;
+            this.statusMessage = HttpUtils.getStatusMessage(this.statusCode);
+            return;
+        }
+
+        this.mimeType = identity.getMimeType();
+        if (HttpUtils.isCompressible(this.mimeType)) {
+            this.headers.put("Vary", "Accept-Encoding");
+        }
+        if (gzip != null && request.getHeader("range") == null && HttpUtils.acceptsEncoding(request, "gzip")
+                && gzip.acquire()) {
+            serveEntry(request, gzip);
+        } else if (identity.acquire()) {
+            serveEntry(request, identity);
+        } else {
+            this.statusCode = 404;
+        }
+        this.statusMessage = HttpUtils.getStatusMessage(this.statusCode);
+    }
+
+    /**
+     * Serves a plain static file, from the static cache when one is configured.
+     * Attaches ETag and Last-Modified validators and answers conditional
+     * requests with 304 Not Modified. Uncached HEAD requests do not read the body.
+     *
+     * @param request  The parsed HTTP request object.
+     * @param resource The canonical file to serve.
+     * @param asset    The file's index entry, whose size, modification time
+     *                 and ETag spare the stat calls; null if not indexed.
+     * @throws IOException If the file cannot be read.
+     */
+    private void serveFile(Request request, File resource, StaticIndex.Asset asset) throws IOException {
+        StaticFileCache cache = StaticFileCache.getInstance();
+
+        if (HttpUtils.isCompressible(this.mimeType)) {
+            this.headers.put("Vary", "Accept-Encoding");
+            if (request.getHeader("range") == null && HttpUtils.acceptsEncoding(request, "gzip")
+                    && serveGzip(request, resource, cache)) {
+                return;
+            }
+        }
+
+        CachedFile cached = (cache != null) ? cache.get(resource, this.mimeType) : null;
+        if (cached != null) {
+            serveEntry(request, cached);
+            return;
+        }
+
+        long lastModified = (asset != null) ? asset.lastModified() : resource.lastModified();
+        long length = (asset != null) ? asset.length() : resource.length();
+        String etag = (asset != null) ? asset.etag() : HttpUtils.buildETag(lastModified, length);
+        if (HttpUtils.isNotModified(request, etag, lastModified)) {
+            notModified(etag, lastModified);
+            return;
+        }
+
+        if (request.method.equals("GET") && request.getHeader("range") != null
+                && HttpUtils.isRangeApplicable(request, etag, lastModified)) {
+            List<ByteRange> ranges = ByteRange.parse(request.getHeader("range"), length);
+            if (ranges != null) {
+                serveRanges(ranges, length, resource, null, etag, lastModified);
+                return;
+            }
+        }
+
+        this.headers.put("ETag", etag);
+        this.headers.put("Last-Modified", HttpUtils.formatHttpDate(lastModified));
+        this.headers.put("Accept-Ranges", "bytes");
+        if (request.method.equals("HEAD")) {
+            this.headers.put("Content-Length", String.valueOf(length));
+            this.body = new byte[0];
+        } else {
+            this.body = Files.readAllBytes(resource.toPath());
+        }
+    }
+
+    /**
+     * Serves the gzip variant of a compressible file: from the static cache,
+     * which compresses on first use, or from a sibling {@code .gz} file when no
+     * cache is configured.
+     *
+     * @return true if a compressed response was produced
+     */
+    private boolean serveGzip(Request request, File resource, StaticFileCache cache) throws IOException {
+        if (cache != null) {
+            if (!cache.getConfig().isCompression()) {
+                return false;
+            }
+            CachedFile gzip = cache.getGzip(resource, this.mimeType);
+            if (gzip == null) {
+                return false;
+            }
+            serveEntry(request, gzip);
+            return true;
+        }
+
+        File sibling = new File(resource.getPath() + ".gz");
+        long lastModified = resource.lastModified();
+        if (!sibling.isFile() || sibling.lastModified() < lastModified) {
+            return false;
+        }
+
+        String etag = HttpUtils.variantETag(HttpUtils.buildETag(lastModified, resource.length()), "gzip");
+        if (HttpUtils.isNotModified(request, etag, lastModified)) {
+            notModified(etag, lastModified);
+            return true;
+        }
+
+        this.headers.put("ETag", etag);
+        this.headers.put("Last-Modified", HttpUtils.formatHttpDate(lastModified));
+        this.headers.put("Content-Encoding", "gzip");
+        if (request.method.equals("HEAD")) {
+            this.headers.put("Content-Length", String.valueOf(sibling.length()));
+            this.body = new byte[0];
+        } else {
+            this.body = Files.readAllBytes(sibling.toPath());
+        }
+        return true;
+    }
+
+    /**
+     * Serves an in-memory entry: 304 when the validators match, byte ranges
+     * sliced from its body, or the whole body with its pre-encoded headers.
+     * The entry must already be acquired; this response takes over releasing it.
+     */
+    private void serveEntry(Request request, CachedFile entry) {
+        String etag = entry.getETag();
+        long lastModified = entry.getLastModified();
+        if (HttpUtils.isNotModified(request, etag, lastModified)) {
+            entry.release();
+            notModified(etag, lastModified);
+            return;
+        }
+
+        if (entry.getEncoding() == null && request.method.equals("GET") && request.getHeader("range") != null
+                && HttpUtils.isRangeApplicable(request, etag, lastModified)) {
+            List<ByteRange> ranges = ByteRange.parse(request.getHeader("range"), entry.getLength());
+            if (ranges != null) {
+                serveRanges(ranges, entry.getLength(), null, entry, etag, lastModified);
+                return;
+            }
+        }
+
+        // Validators are part of the cached header bytes
+        this.cachedFile = entry;
+        this.bodyBuffer = entry.getBody();
+        this.encodedHeaders = entry.getHeaderBytes();
+    }
+
+    private void notModified(String etag, long lastModified) {
+        this.statusCode = 304;
+        this.headers.put("ETag", etag);
+        this.headers.put("Last-Modified", HttpUtils.formatHttpDate(lastModified));
+    }
+
+    /**
+     * Answers a Range request with 206 Partial Content, or 416 if none of the
+     * requested ranges overlap the file. Ranges are sliced from the cached body
+     * when available and otherwise read from the file region while writing, so
+     * the whole file is never loaded.
+     */
+    private void serveRanges(List<ByteRange> ranges, long length, File resource, CachedFile cached,
+            String etag, long lastModified) {
+        if (ranges.isEmpty()) {
+            if (cached != null) {
+                cached.release();
+            }
+            this.statusCode = 416;
+            this.mimeType = "text/html"; // Body is the generated error page
+            this.headers.put("Content-Range", "bytes */" + length);
+            return;
+        }
+
+        this.statusCode = 206;
+        this.cachedFile = cached;
+        this.headers.put("ETag", etag);
+        this.headers.put("Last-Modified", HttpUtils.formatHttpDate(lastModified));
+        this.headers.put("Accept-Ranges", "bytes");
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            this.headers.put("Content-Range", range.toContentRange(length));
+            if (cached != null) {
+                this.bodyBuffer = slice(cached.getBody(), range);
+            } else {
+                this.bodyWriter = out -> writeRegions(out, resource, null, ranges, null);
+                this.bodyWriterLength = range.length();
+            }
+            return;
+        }
+
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        String partType = HttpUtils.formatContentType(this.mimeType);
+        byte[][] partHeaders = new byte[ranges.size()][];
+        long total = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + partType + "\r\n"
+                    + "Content-Range: " + range.toContentRange(length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            total += partHeaders[i].length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        this.mimeType = "multipart/byteranges; boundary=" + boundary;
+        this.bodyWriter = out -> {
+            writeRegions(out, resource, (cached != null) ? cached.getBody() : null, ranges, partHeaders);
+            out.write(closing);
+        };
+        this.bodyWriterLength = total + closing.length;
+    }
+
+    /**
+     * Writes byte ranges from a buffer, or from the file when no buffer is
+     * given, preceding each range with its part header when present.
+     */
+    private static void writeRegions(OutputStream out, File resource, ByteBuffer buffer, List<ByteRange> ranges,
+            byte[][] partHeaders) throws IOException {
+        if (buffer != null) {
+            for (int i = 0; i < ranges.size(); i++) {
+                if (partHeaders != null) {
+                    out.write(partHeaders[i]);
+                }
+                writeBuffer(out, slice(buffer, ranges.get(i)));
+            }
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(resource.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK_SIZE);
+            for (int i = 0; i < ranges.size(); i++) {
+                if (partHeaders != null) {
+                    out.write(partHeaders[i]);
+                }
+                ByteRange range = ranges.get(i);
+                long position = range.start();
+                long remaining = range.length();
+                while (remaining > 0) {
+                    chunk.clear().limit((int) Math.min(chunk.capacity(), remaining));
+                    int n = channel.read(chunk, position);
+                    if (n < 0) {
+                        throw new IOException("File truncated while serving range: " + resource);
+                    }
+                    out.write(chunk.array(), 0, n);
+                    position += n;
+                    remaining -= n;
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, ByteRange range) {
+        return buffer.slice(buffer.position() + (int) range.start(), (int) range.length());
+    }
+
     /**
      * Returns the HTTP status code of the response.
      *
@@ -195,20 +482,277 @@ public class HttpResponse {
 
     /**
      * Returns the raw body bytes of the response.
-     * If an error status is set (4xx or 5xx), returns a generated HTML error page.
+     * If an error status is set (4xx or 5xx) without a body of its own, returns
+     * the shared HTML error page, which must not be modified.
      * Preserves body for successful responses and redirects.
      *
      * @return Byte array of the response body.
      */
     public byte[] getBody() {
-        // Only generate error pages for actual error codes (4xx, 5xx)
+        // Only use error pages for actual error codes (4xx, 5xx) without a body
         // Preserve body for 2xx (success) and 3xx (redirects)
+        if (usesErrorPage()) {
+            return ErrorResponses.html(statusCode);
+        }
         if (statusCode >= 400) {
-            return HttpUtils.buildErrorPage(statusCode);
+            return body;
+        }
+        if (bodyBuffer != null) {
+            ByteBuffer copy = bodyBuffer.duplicate();
+            byte[] data = new byte[copy.remaining()];
+            copy.get(data);
+            return data;
+        }
+        if (bodyWriter != null) {
+            int expected = (bodyWriterLength < 0) ? 8192 : (int) Math.min(bodyWriterLength, Integer.MAX_VALUE);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(expected);
+            try {
+                bodyWriter.writeTo(buffer);
+            } catch (IOException e) {
+                Logger.err("Failed to buffer streamed body: " + e.getMessage());
+            }
+            return buffer.toByteArray();
         }
         return body != null ? body : new byte[0];
     }
 
+    /**
+     * Writes the status line, headers and terminating blank line.
+     * Pre-encoded entity headers from the static cache are written as-is and
+     * take precedence: a header set later (e.g. by a filter) under the same
+     * name is skipped rather than sent twice.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeHead(OutputStream out) throws IOException {
+        byte[] entityHeaders = (statusCode >= 400) ? errorHeaders() : encodedHeaders;
+        if (entityHeaders == null) {
+            out.write((toString() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        appendStatusLine(sb);
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        out.write(entityHeaders);
+
+        sb.setLength(0);
+        appendHeaders(sb, headers.isEmpty() ? null : new String(entityHeaders, StandardCharsets.US_ASCII));
+        sb.append("\r\n");
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the response body. Buffer-backed and streamed bodies are written
+     * without first being copied into a new array.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeBody(OutputStream out) throws IOException {
+        if (statusCode < 400 && bodyWriter != null && bodyWriterLength < 0) {
+            ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+            bodyWriter.writeTo(chunked);
+            chunked.finish();
+        } else if (statusCode < 400 && bodyWriter != null) {
+            bodyWriter.writeTo(out);
+        } else if (statusCode < 400 && bodyBuffer != null) {
+            writeBuffer(out, bodyBuffer.duplicate());
+        } else {
+            out.write(getBody());
+        }
+    }
+
+    /**
+     * Checks whether the body is the generated error page: an error status
+     * with no body of its own.
+     */
+    private boolean usesErrorPage() {
+        return statusCode >= 400 && (body == null || body.length == 0);
+    }
+
+    /**
+     * Returns the pre-encoded entity headers of a shared error body, or null
+     * if the body is custom or the headers were overridden.
+     */
+    private byte[] errorHeaders() {
+        if (headers.containsKey("Content-Type") || headers.containsKey("Content-Length")) {
+            return null;
+        }
+        return ErrorResponses.encodedHeaders(statusCode, getBody());
+    }
+
+    /** Checks whether CRLF-separated header lines include one with the given name */
+    private static boolean hasHeaderLine(String lines, String name) {
+        int start = 0;
+        while (start < lines.length()) {
+            if (lines.regionMatches(true, start, name, 0, name.length())
+                    && lines.startsWith(":", start + name.length())) {
+                return true;
+            }
+            int end = lines.indexOf('\n', start);
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static void writeBuffer(OutputStream out, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(buffer.remaining(), WRITE_CHUNK_SIZE)];
+        while (buffer.hasRemaining()) {
+            int n = Math.min(buffer.remaining(), chunk.length);
+            buffer.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    /**
+     * Replaces the body with a streamed one.
+     *
+     * @param writer the writer producing the body
+     * @param length the number of bytes it will write, or -1 if unknown, in
+     *               which case the body is sent with chunked transfer coding
+     */
+    public void setStreamingBody(BodyWriter writer, long length) {
+        release();
+        this.bodyWriter = writer;
+        this.bodyWriterLength = length;
+        this.bodyBuffer = null;
+        this.encodedHeaders = null;
+        this.body = null;
+    }
+
+    /**
+     * Checks whether the body is buffered, mapped or streamed rather than
+     * held in a plain byte array.
+     *
+     * @return true if the body is not a byte array
+     */
+    public boolean isBodyStreamed() {
+        return bodyBuffer != null || bodyWriter != null;
+    }
+
+    /**
+     * Creates a placeholder for a response that completes later. The
+     * connection is resumed and written once the future completes; headers
+     * and cookies set on the placeholder meanwhile (e.g. by filters) are
+     * carried over to the final response.
+     *
+     * @param future the final response
+     * @return the placeholder
+     */
+    public static HttpResponse deferred(CompletableFuture<HttpResponse> future) {
+        HttpResponse response = new HttpResponse(200, "OK", new byte[0], "text/plain");
+        response.deferred = future;
+        return response;
+    }
+
+    /**
+     * Returns the pending final response if this is a placeholder.
+     *
+     * @return the future, or null for ordinary responses
+     */
+    public CompletableFuture<HttpResponse> getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Completes a placeholder: copies the headers and cookies set on it onto
+     * the final response, without overriding the final response's own
+     * headers.
+     *
+     * @param result the final response
+     * @return the final response
+     */
+    public HttpResponse complete(HttpResponse result) {
+        if (!headers.isEmpty()) {
+            Map<String, String> merged = new HashMap<>(headers);
+            merged.putAll(result.headers);
+            result.headers = merged;
+        }
+        for (Cookie cookie : cookies) {
+            result.addCookie(cookie);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a response header set on this response.
+     *
+     * @param name the header name, as it will be sent
+     * @return the value, or null if not set
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Returns the response headers set so far, without the entity headers
+     * (Content-Type, Content-Length) added when the response is written.
+     *
+     * @return unmodifiable map of header names to values
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Returns the cookies to be sent with this response.
+     *
+     * @return unmodifiable list of cookies
+     */
+    public List<Cookie> getCookies() {
+        return Collections.unmodifiableList(cookies);
+    }
+
+    /**
+     * Sets a response header, replacing any previous value.
+     *
+     * @param name  the header name
+     * @param value the header value
+     */
+    public void setHeader(String name, String value) {
+        // Headers coming from Response are immutable
+        Map<String, String> copy = new HashMap<>(headers);
+        copy.put(name, value);
+        this.headers = copy;
+    }
+
+    /**
+     * Returns the length of the body that will be written.
+     *
+     * @return body length in bytes, or -1 if it is sent chunked
+     */
+    public long getContentLength() {
+        if (statusCode < 400 && bodyWriter != null) {
+            return bodyWriterLength;
+        }
+        if (statusCode < 400 && bodyBuffer != null) {
+            return bodyBuffer.remaining();
+        }
+        return getBody().length;
+    }
+
+    /**
+     * Releases the cache entry backing this response, if any.
+     * Called once the body has been written; safe to call more than once.
+     */
+    public void release() {
+        CachedFile file = cachedFile;
+        if (file != null) {
+            cachedFile = null;
+            file.release();
+        }
+    }
+
     /**
      * Adds a cookie to this response.
      * 
@@ -230,24 +774,42 @@ public class HttpResponse {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append("HTTP/1.1 ").append(statusCode).append(" ").append(statusMessage).append("\r\n");
+        appendStatusLine(sb);
         
-        // Add Content-Type if not already present
+        // Add Content-Type if not already present; error pages are always HTML
         if (!headers.containsKey("Content-Type")) {
-            sb.append("Content-Type: ").append(mimeType);
-            if (mimeType.startsWith("text/")) {
-                sb.append("; charset=UTF-8");
-            }
-            sb.append("\r\n");
+            String type = usesErrorPage() ? "text/html" : mimeType;
+            sb.append("Content-Type: ").append(HttpUtils.formatContentType(type)).append("\r\n");
         }
         
-        // Add Content-Length if not already present
-        if (!headers.containsKey("Content-Length")) {
-            sb.append("Content-Length: ").append(getBody().length).append("\r\n");
+        // Add Content-Length if not already present (304 describes no body)
+        long contentLength = getContentLength();
+        if (contentLength < 0) {
+            sb.append("Transfer-Encoding: chunked\r\n");
+        } else if (!headers.containsKey("Content-Length") && statusCode != 304) {
+            sb.append("Content-Length: ").append(contentLength).append("\r\n");
         }
         
+        appendHeaders(sb, null);
+        return sb.toString();
+    }
+
+    private void appendStatusLine(StringBuilder sb) {
+        sb.append("HTTP/1.1 ").append(statusCode).append(" ").append(statusMessage).append("\r\n");
+    }
+
+    /**
+     * Appends the regular headers and cookies.
+     *
+     * @param written header lines already written, whose names are skipped;
+     *                null if none
+     */
+    private void appendHeaders(StringBuilder sb, String written) {
         // Add regular headers
         for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (written != null && hasHeaderLine(written, header.getKey())) {
+                continue;
+            }
             sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
         }
         
@@ -255,7 +817,5 @@ public class HttpResponse {
         for (Cookie cookie : cookies) {
             sb.append("Set-Cookie: ").append(cookie.toString()).append("\r\n");
         }
-        
-        return sb.toString();
     }
 }
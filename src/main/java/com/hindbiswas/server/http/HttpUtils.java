@@ -5,11 +5,16 @@ import com.hindbiswas.server.logger.Logger;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,6 +42,7 @@ public class HttpUtils {
         Map<Integer, String> map = new LinkedHashMap<>();
         map.put(200, "OK");
         map.put(204, "No Content");
+        map.put(206, "Partial Content");
         map.put(301, "Moved Permanently");
         map.put(302, "Found");
         map.put(303, "See Other");
@@ -46,8 +52,11 @@ public class HttpUtils {
         map.put(403, "Forbidden");
         map.put(404, "Not Found");
         map.put(405, "Method Not Allowed");
+        map.put(413, "Content Too Large");
+        map.put(416, "Range Not Satisfiable");
         map.put(500, "Internal Server Error");
         map.put(503, "Service Unavailable");
+        map.put(504, "Gateway Timeout");
         REASON_PHRASES = Collections.unmodifiableMap(map);
 
         MIME_TYPES.put("html", "text/html");
@@ -73,6 +82,11 @@ public class HttpUtils {
 
     private static final Set<String> SUPPORTED_METHODS = Set.of("GET", "POST", "HEAD", "PUT", "PATCH", "DELETE");
     private static final Set<String> STATIC_METHODS = Set.of("GET", "HEAD");
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of("text/html", "text/css", "text/plain",
+            "application/javascript", "application/json", "image/svg+xml");
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+            .withZone(ZoneOffset.UTC);
 
     /**
      * Prevent instantiation of this utility class.
@@ -119,6 +133,20 @@ public class HttpUtils {
         return "application/octet-stream";
     }
 
+    /**
+     * Formats a MIME type as a Content-Type header value, adding the UTF-8
+     * charset for text types.
+     *
+     * @param mimeType the MIME type (e.g., "text/html")
+     * @return the header value (e.g., "text/html; charset=UTF-8")
+     */
+    public static String formatContentType(String mimeType) {
+        if (mimeType.startsWith("text/")) {
+            return mimeType + "; charset=UTF-8";
+        }
+        return mimeType;
+    }
+
     /**
      * Validates whether an HTTP status code is within the valid range.
      *
@@ -173,9 +201,173 @@ public class HttpUtils {
         return requested;
     }
 
+    /**
+     * Builds a strong entity tag from a file's modification time and size.
+     *
+     * @param lastModified the modification time in milliseconds
+     * @param length       the file size in bytes
+     * @return the quoted entity tag (e.g., "\"18f3a2b1c00-3de5\"")
+     */
+    public static String buildETag(long lastModified, long length) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    /**
+     * Formats a timestamp as an HTTP date (IMF-fixdate).
+     *
+     * @param millis the time in milliseconds since the epoch
+     * @return the formatted date (e.g., "Sun, 06 Nov 1994 08:49:37 GMT")
+     */
+    public static String formatHttpDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    /**
+     * Parses an HTTP date header value.
+     *
+     * @param value the header value
+     * @return the time in milliseconds, or -1 if it cannot be parsed
+     */
+    public static long parseHttpDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Evaluates If-None-Match and If-Modified-Since against a resource's
+     * validators. If-None-Match takes precedence when both are present.
+     *
+     * @param request      the HTTP request
+     * @param etag         the current entity tag of the resource
+     * @param lastModified the resource's modification time in milliseconds
+     * @return true if the client's copy is current and 304 should be sent
+     */
+    public static boolean isNotModified(Request request, String etag, long lastModified) {
+        if (request == null || !validateStaticMethod(request.method)) {
+            return false;
+        }
+
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (ifNoneMatch != null) {
+            String current = stripWeak(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(current)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long since = parseHttpDate(request.getHeader("if-modified-since"));
+        // HTTP dates have one-second resolution
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+    /**
+     * Evaluates If-Range: a Range header is only honored when the client's
+     * validator still matches the current representation. A date only counts
+     * when it is a strong validator (RFC 9110, section 13.1.5), i.e. the file
+     * was last modified at least a second ago; otherwise it may have changed
+     * again within the same second.
+     *
+     * @param request      the HTTP request
+     * @param etag         the current entity tag of the resource
+     * @param lastModified the resource's modification time in milliseconds
+     * @return true if the Range header should be applied
+     */
+    public static boolean isRangeApplicable(Request request, String etag, long lastModified) {
+        String ifRange = request.getHeader("if-range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Strong comparison is required; weak tags never match
+            return ifRange.equals(etag);
+        }
+        if (System.currentTimeMillis() / 1000 - lastModified / 1000 < 1) {
+            return false;
+        }
+        long date = parseHttpDate(ifRange);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * Derives the entity tag of an encoded variant from the identity tag, so
+     * caches never confuse compressed and uncompressed bodies.
+     *
+     * @param etag     the identity entity tag
+     * @param encoding the content coding (e.g., "gzip")
+     * @return the variant tag (e.g., "\"18f3a2b1c00-3de5-gzip\"")
+     */
+    public static String variantETag(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * Checks whether a MIME type is text-like and benefits from compression.
+     *
+     * @param mimeType the MIME type
+     * @return true for text, JavaScript, JSON, XML and SVG types
+     */
+    public static boolean isCompressible(String mimeType) {
+        return mimeType != null && COMPRESSIBLE_TYPES.contains(mimeType);
+    }
+
+    /**
+     * Checks whether the client's Accept-Encoding allows a content coding.
+     * A coding listed with q=0 is refused even if "*" is also present.
+     *
+     * @param request  the HTTP request
+     * @param encoding the content coding (e.g., "gzip")
+     * @return true if the coding is acceptable
+     */
+    public static boolean acceptsEncoding(Request request, String encoding) {
+        String header = (request != null) ? request.getHeader("accept-encoding") : null;
+        if (header == null) {
+            return false;
+        }
+
+        boolean wildcard = false;
+        for (String token : header.split(",")) {
+            String[] parts = token.split(";");
+            String name = parts[0].trim();
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(encoding)) {
+                return !refused;
+            }
+            if (name.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
     /**
      * Sends an HTTP response to the client via the given output stream.
      * Automatically handles HEAD requests by omitting the body.
+     * Releases any cached file backing the response once it has been written.
      *
      * @param out      the output stream to write to
      * @param request  the original HTTP request
@@ -183,22 +375,17 @@ public class HttpUtils {
      */
     public static void sendResponse(OutputStream out, Request request, HttpResponse response) {
         try {
-            String responseHeader = response.toString();
-            byte[] responseBody = response.getBody();
+            response.writeHead(out);
 
-            PrintWriter pw = new PrintWriter(out, false, StandardCharsets.UTF_8);
-            pw.write(responseHeader);
-            pw.write("\r\n");
-            pw.flush();
-
-            if (request != null && !request.method.equals("HEAD") && responseBody != null) {
-                out.write(responseBody);
+            if (request != null && !request.method.equals("HEAD")) {
+                response.writeBody(out);
             }
 
-
             out.flush();
         } catch (IOException e) {
             Logger.err("Failed to send response: " + e.getMessage());
+        } finally {
+            response.release();
         }
     }
 
@@ -206,14 +393,11 @@ public class HttpUtils {
      * Builds an Error Page
      * 
      * @param statusCode the status code
-     * @return the error page body bytes
+     * @return a fresh copy of the error page body bytes; see
+     *         {@link ErrorResponses#html(int)} for the shared one
      */
     public static byte[] buildErrorPage(int statusCode) {
-        String statusMessage = REASON_PHRASES.getOrDefault(statusCode, "Error");
-        String html = "<html><head><title>" + statusCode + " " + statusMessage +
-                "</title></head><body><h1>" + statusCode + " " + statusMessage +
-                "</h1></body></html>";
-        return html.getBytes(StandardCharsets.UTF_8);
+        return ErrorResponses.renderHtml(statusCode);
     }
 
     /**
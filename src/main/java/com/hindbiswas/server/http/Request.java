@@ -5,8 +5,13 @@ import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import com.hindbiswas.server.logger.Logger;
 import com.hindbiswas.server.session.Session;
 import com.hindbiswas.server.session.SessionManager;
 
@@ -20,6 +25,9 @@ public class Request {
     /** HTTP method (e.g., GET, POST) */
     public final String method;
 
+    /** Parsed HTTP method, or null if the method is not recognized */
+    private final HttpMethod httpMethod;
+
     /** Request path (e.g., /api/data) */
     public final String path;
 
@@ -44,9 +52,36 @@ public class Request {
     /** Session manager for session operations */
     private SessionManager sessionManager;
 
+    /** The request this is a sub-request of, whose session it shares; null if none */
+    private Request parent;
+
     /** Content-Length if present */
     private int contentLength;
 
+    /** Names of the path parameters captured by the matched route */
+    private String[] pathParamNames = NO_PATH_PARAMS;
+
+    /** Values of the path parameters, aligned with {@link #pathParamNames} */
+    private String[] pathParamValues = NO_PATH_PARAMS;
+
+    private static final String[] NO_PATH_PARAMS = new String[0];
+
+    /** Headers of a batch request that describe it alone, not its sub-requests */
+    private static final String[] SUB_REQUEST_DROPPED_HEADERS = { "content-length", "content-type",
+            "accept-encoding", "range", "if-range", "if-none-match", "if-modified-since" };
+
+    /** Deadline as a {@link System#nanoTime()} value; 0 if there is none */
+    private volatile long deadline = 0;
+
+    /** Set when the client disconnects or the request is otherwise abandoned */
+    private volatile boolean cancelled = false;
+
+    /** Run once when the request is cancelled */
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+
+    /** Context bound while the request is handled; its span starts here */
+    private final RequestContext context = new RequestContext(this);
+
     /**
      * Constructs a request manually (usually for testing).
      *
@@ -60,6 +95,7 @@ public class Request {
             Map<String, String> body) {
         String[] pathParts = parsePathAndParams(fullPath);
         this.method = method.toUpperCase();
+        this.httpMethod = HttpMethod.of(this.method);
         this.path = pathParts[0];
         this.version = version;
         this.headers = headers;
@@ -68,6 +104,61 @@ public class Request {
         this.cookies = parseCookies();
     }
 
+    /**
+     * Creates a sub-request handled in-process on behalf of this request, as
+     * part of a batch. It inherits this request's headers (e.g. cookies),
+     * deadline and cancellation, and shares its session: the session is
+     * loaded and saved once, with this request. Body, encoding and
+     * conditional headers are not inherited, so a sub-response is never
+     * compressed, partial or a 304 unless the sub-request asks for it.
+     *
+     * @param method   HTTP method (e.g., GET)
+     * @param fullPath Path with optional query string
+     * @param headers  Headers overriding this request's, or null
+     * @param body     Body data, or null
+     * @return the sub-request
+     */
+    public Request subRequest(String method, String fullPath, Map<String, String> headers,
+            Map<String, String> body) {
+        Map<String, String> merged = new HashMap<>(this.headers);
+        for (String name : SUB_REQUEST_DROPPED_HEADERS) {
+            merged.remove(name);
+        }
+        if (headers != null) {
+            headers.forEach((name, value) -> merged.put(name.toLowerCase(Locale.ROOT), value));
+        }
+
+        Request sub = new Request(method, fullPath, version, merged, body);
+        sub.parent = (parent != null) ? parent : this;
+        sub.sessionManager = sessionManager;
+        sub.deadline = deadline;
+        onCancel(sub::cancel);
+        return sub;
+    }
+
+    /**
+     * Returns whether this is a sub-request of a batch.
+     */
+    public boolean isSubRequest() {
+        return parent != null;
+    }
+
+    /**
+     * Creates a copy of this request for work that outlives it, such as a
+     * background cache refresh: same method, path, query and path parameters,
+     * but the given headers and no body, session, deadline or cancellation.
+     *
+     * @param headers Headers of the copy (lowercased keys)
+     * @return the copy
+     */
+    public Request detached(Map<String, String> headers) {
+        Request copy = new Request(method, path, version, headers, null);
+        copy.params.putAll(params);
+        copy.pathParamNames = pathParamNames;
+        copy.pathParamValues = pathParamValues;
+        return copy;
+    }
+
     /**
      * Constructs a Request by parsing an incoming BufferedReader.
      * Supports GET, POST, query params, headers, and basic body formats.
@@ -99,6 +190,7 @@ public class Request {
         }
 
         this.method = parts[0].toUpperCase();
+        this.httpMethod = HttpMethod.of(this.method);
         String[] pathParts = parsePathAndParams(parts[1]);
         this.path = pathParts[0];
         this.version = parts[2];
@@ -275,6 +367,193 @@ public class Request {
         return headers.get(key);
     }
 
+    /**
+     * Gets the parsed HTTP method.
+     *
+     * @return The method, or null if it is not a recognized method
+     */
+    public HttpMethod getMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * Sets the path parameters captured by the router. The arrays are used as
+     * given, not copied.
+     *
+     * @param names  parameter names
+     * @param values parameter values, aligned with the names; may be longer
+     */
+    public void setPathParams(String[] names, String[] values) {
+        this.pathParamNames = names;
+        this.pathParamValues = values;
+    }
+
+    /**
+     * Gets a path parameter captured by the matched route, e.g. {@code id} for
+     * {@code /api/todos/{id}}. Wildcards are named {@code *} unless the route
+     * names them.
+     *
+     * @param name Parameter name
+     * @return Value or null if the route has no such parameter
+     */
+    public String getPathParam(String name) {
+        for (int i = 0; i < pathParamNames.length; i++) {
+            if (pathParamNames[i].equals(name)) {
+                return pathParamValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a path parameter as an int, typically one declared {@code {name:int}}.
+     *
+     * @param name Parameter name
+     * @return The value
+     * @throws NumberFormatException if the parameter is missing or not an int
+     */
+    public int getIntPathParam(String name) {
+        return Integer.parseInt(getPathParam(name));
+    }
+
+    /**
+     * Gets a path parameter as a long, typically one declared {@code {name:long}}.
+     *
+     * @param name Parameter name
+     * @return The value
+     * @throws NumberFormatException if the parameter is missing or not a long
+     */
+    public long getLongPathParam(String name) {
+        return Long.parseLong(getPathParam(name));
+    }
+
+    /**
+     * Gets all path parameters captured by the matched route.
+     *
+     * @return Map of parameter name to value, in route order
+     */
+    public Map<String, String> getPathParams() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < pathParamNames.length; i++) {
+            result.put(pathParamNames[i], pathParamValues[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the context bound while this request is handled.
+     *
+     * @return the request's context
+     */
+    public RequestContext getContext() {
+        return context;
+    }
+
+    /**
+     * Gives the request a deadline, measured from now.
+     *
+     * @param timeoutMillis the time the request may take, or 0 for none
+     */
+    public void setDeadline(long timeoutMillis) {
+        this.deadline = (timeoutMillis > 0) ? Math.max(1, System.nanoTime() + timeoutMillis * 1_000_000) : 0;
+    }
+
+    /**
+     * Returns whether the request has a deadline.
+     */
+    public boolean hasDeadline() {
+        return deadline != 0;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return milliseconds left, 0 if the deadline has passed, or
+     *         {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long getRemainingMillis() {
+        long deadline = this.deadline;
+        if (deadline == 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (deadline - System.nanoTime()) / 1_000_000);
+    }
+
+    /**
+     * Returns whether the deadline has passed.
+     */
+    public boolean isExpired() {
+        long deadline = this.deadline;
+        return deadline != 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Cancels the request, e.g. because the client disconnected, and runs the
+     * cancel listeners. Later calls do nothing.
+     */
+    public void cancel() {
+        synchronized (cancelListeners) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        for (Runnable listener : cancelListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                Logger.err("Cancel listener failed for " + method + " " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the request was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether work for this request should stop: it was cancelled or
+     * its deadline has passed.
+     */
+    public boolean isAbandoned() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * Throws if work for this request should stop. Long-running handlers can
+     * call this between steps.
+     *
+     * @throws RequestCancelledException if the request was cancelled or its
+     *                                   deadline has passed
+     */
+    public void ensureActive() throws RequestCancelledException {
+        if (cancelled) {
+            throw new RequestCancelledException("Request cancelled: " + method + " " + path, false);
+        }
+        if (isExpired()) {
+            throw new RequestCancelledException("Request deadline exceeded: " + method + " " + path, true);
+        }
+    }
+
+    /**
+     * Registers a listener run when the request is cancelled, e.g. to cancel
+     * a downstream call. Runs at once if the request already is cancelled.
+     *
+     * @param listener the listener
+     */
+    public void onCancel(Runnable listener) {
+        synchronized (cancelListeners) {
+            if (!cancelled) {
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
     /**
      * Checks if the request version is HTTP/1.0.
      * 
@@ -342,6 +621,8 @@ public class Request {
      * @return Session object or null if no session exists
      */
     public Session getSession() {
+        if (parent != null)
+            return parent.getSession();
         return session;
     }
 
@@ -356,7 +637,7 @@ public class Request {
      */
     @Deprecated
     public Session getSession(boolean create) {
-        return session;
+        return getSession();
     }
 
     /**
@@ -365,7 +646,9 @@ public class Request {
      * 
      * @return Session object (existing or newly created), or null if no SessionManager available
      */
-    public Session getOrCreateSession() {
+    public synchronized Session getOrCreateSession() {
+        if (parent != null)
+            return parent.getOrCreateSession();
         if (session == null && sessionManager != null) {
             session = sessionManager.createSession();
         }
@@ -379,7 +662,10 @@ public class Request {
      * @param session Session object to associate with this request
      */
     public void setSession(Session session) {
-        this.session = session;
+        if (parent != null)
+            parent.setSession(session);
+        else
+            this.session = session;
     }
 
     /**
@@ -409,6 +695,8 @@ public class Request {
      * @return Cookie object for the session, or null if no session exists
      */
     public Cookie getSessionCookie() {
+        if (parent != null)
+            return parent.getSessionCookie();
         if (session == null || sessionManager == null) {
             return null;
         }
@@ -421,7 +709,7 @@ public class Request {
      * @return true if a session exists, false otherwise
      */
     public boolean hasSession() {
-        return session != null;
+        return getSession() != null;
     }
 
 
@@ -430,7 +718,9 @@ public class Request {
      * 
      * @return true if a session was invalidated, false if no session exists
      */
-    public boolean invalidateSession() {
+    public synchronized boolean invalidateSession() {
+        if (parent != null)
+            return parent.invalidateSession();
         if (session == null || sessionManager == null) {
             return false;
         }
@@ -456,8 +746,16 @@ public class Request {
      * Saves the current session to storage.
      * Call this after modifying session attributes to persist changes.
      * This is especially important before redirects or when session data must be preserved.
+     * Sub-requests leave saving to their parent request.
      */
     public void saveSession() {
+        if (parent != null) {
+            return;
+        }
+        if (cancelled) {
+            Logger.dbg("Skipping session save for cancelled request " + method + " " + path);
+            return;
+        }
         if (session != null && sessionManager != null) {
             sessionManager.saveSession(session);
         }
@@ -0,0 +1,22 @@
+package com.hindbiswas.server.http;
+
+/**
+ * Thrown by {@link Request#ensureActive()} when the client has gone away or
+ * the request's deadline has passed, so work for it can stop early.
+ */
+public class RequestCancelledException extends RuntimeException {
+    private final boolean expired;
+
+    public RequestCancelledException(String message, boolean expired) {
+        super(message);
+        this.expired = expired;
+    }
+
+    /**
+     * Returns whether the request ran out of time, as opposed to being
+     * cancelled (e.g. because the client disconnected).
+     */
+    public boolean isExpired() {
+        return expired;
+    }
+}
@@ -0,0 +1,120 @@
+package com.hindbiswas.server.http;
+
+import com.hindbiswas.server.session.Session;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The context of the request being handled: the request, its session and
+ * deadline, and a timing span.
+ *
+ * <p>
+ * While the server handles a request the context is bound to the handling
+ * thread with a {@link ScopedValue}, so handlers, template functions and
+ * utilities can reach it through {@link #current()} without it being passed
+ * along. Unlike a {@code ThreadLocal} the binding ends with the handling and
+ * cannot leak into the next request on a pooled or virtual thread. Work
+ * handed to other threads, such as an asynchronous response, is not bound;
+ * capture the context first and use {@link #call(Supplier)} there.
+ * </p>
+ */
+public final class RequestContext {
+    private static final ScopedValue<RequestContext> CURRENT = ScopedValue.newInstance();
+
+    private final Request request;
+    private final long startNanos = System.nanoTime();
+
+    /** Duration of each marked phase in nanoseconds, in order */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long lastMarkNanos = startNanos;
+
+    RequestContext(Request request) {
+        this.request = request;
+    }
+
+    /**
+     * Gets the context of the request handled by the current thread.
+     *
+     * @return the context, or null outside request handling
+     */
+    public static RequestContext current() {
+        return CURRENT.isBound() ? CURRENT.get() : null;
+    }
+
+    /**
+     * Runs an action with this context bound to the current thread.
+     *
+     * @param action the action
+     * @return the action's result
+     */
+    public <T> T call(Supplier<T> action) {
+        return ScopedValue.where(CURRENT, this).call(action::get);
+    }
+
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * Gets the request's session.
+     *
+     * @return the session, or null if the request has none
+     */
+    public Session getSession() {
+        return request.getSession();
+    }
+
+    /**
+     * Returns the time left until the request's deadline.
+     *
+     * @return milliseconds left, or {@link Long#MAX_VALUE} if there is no
+     *         deadline
+     */
+    public long getRemainingMillis() {
+        return request.getRemainingMillis();
+    }
+
+    /**
+     * Ends the current phase of the span, e.g. "resolve", and starts the next.
+     *
+     * @param phase the name of the phase that just ended
+     */
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phases.merge(phase, now - lastMarkNanos, Long::sum);
+        lastMarkNanos = now;
+    }
+
+    /**
+     * Gets the time since the request started.
+     */
+    public double getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    /**
+     * Gets the duration of each marked phase in milliseconds, in order.
+     */
+    public synchronized Map<String, Double> getPhases() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        phases.forEach((phase, nanos) -> result.put(phase, nanos / 1_000_000.0));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(request.method).append(' ').append(request.path)
+                .append(String.format(" %.2fms", getElapsedMillis()));
+        Map<String, Double> phases = getPhases();
+        if (!phases.isEmpty()) {
+            sb.append(" (");
+            phases.forEach((phase, millis) -> sb.append(String.format("%s %.2fms, ", phase, millis)));
+            sb.setLength(sb.length() - 2);
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
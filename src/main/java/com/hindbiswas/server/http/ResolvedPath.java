@@ -0,0 +1,49 @@
+package com.hindbiswas.server.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+
+/**
+ * The outcome of mapping a request path onto the web root: the canonical
+ * file (after index resolution), whether it is safe and servable, and its
+ * MIME type. Depends only on the path and the filesystem, so it can be cached
+ * until the web root changes.
+ *
+ * @param resource     canonical file, with directories resolved to their index
+ * @param relativePath path of the file relative to the web root, or null if
+ *                     it lies outside it
+ * @param underWebRoot false if the path escapes the web root (403)
+ * @param exists       true if the file exists, is a regular file and readable
+ * @param mimeType     MIME type guessed from the file name
+ */
+public record ResolvedPath(File resource, String relativePath, boolean underWebRoot, boolean exists,
+        String mimeType) {
+
+    /**
+     * Resolves a raw request path against the web root, hitting the
+     * filesystem for canonicalization and existence checks.
+     *
+     * @param requestPath the request path, still URL-encoded
+     * @param webRoot     the base directory for serving files
+     * @return the resolution
+     * @throws IOException if the path cannot be decoded or canonicalized
+     */
+    public static ResolvedPath resolve(String requestPath, File webRoot) throws IOException {
+        String path = (requestPath.startsWith("/")) ? requestPath.substring(1) : requestPath;
+        String decoded = URLDecoder.decode(path, "UTF-8");
+        File resource = HttpUtils.indexIfDirectory(new File(webRoot, decoded).getCanonicalFile());
+        String mimeType = HttpUtils.guessMime(resource.getName());
+
+        if (!HttpUtils.ensureResourceUnderWebRoot(resource, webRoot)) {
+            return new ResolvedPath(resource, null, false, false, mimeType);
+        }
+
+        String filePath = resource.getCanonicalPath();
+        String relativePath = filePath.substring(webRoot.getCanonicalPath().length());
+        if (relativePath.startsWith("/") || relativePath.startsWith("\\")) {
+            relativePath = relativePath.substring(1);
+        }
+        return new ResolvedPath(resource, relativePath, true, HttpUtils.ensureResourceExists(resource), mimeType);
+    }
+}
@@ -14,6 +14,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A unified HTTP response representation.
@@ -26,6 +31,16 @@ public class Response {
     private final Map<String, String> headers;
     private final List<Cookie> cookies;
 
+    /** Result of an asynchronous handler; null for ordinary responses */
+    private CompletableFuture<Response> pending;
+
+    /** Timeout applied by {@link #async(CompletableFuture)} */
+    public static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = 30_000;
+
+    /** Shared error responses; replaced when the error templates change */
+    private static final Map<Integer, Response> HTML_ERRORS = new ConcurrentHashMap<>();
+    private static final Map<Integer, Response> JSON_ERRORS = new ConcurrentHashMap<>();
+
     /**
      * Master constructor: initializes all fields and builds headers.
      */
@@ -116,38 +131,84 @@ public class Response {
         return new Response(statusCode, "text/plain", new byte[0], extra);
     }
 
-    /** Static factory: error page with HTML body. */
+    /** Static factory: error page with HTML body. Instances are shared. */
     public static Response error(int statusCode) {
         if (statusCode == 204 || statusCode == 304) {
             return new Response(statusCode, "text/plain", new byte[0]);
         }
-        String msg = HttpUtils.getStatusMessage(statusCode);
-        String html = "<html><head><title>" + statusCode + " " + msg +
-                "</title></head><body><h1>" + statusCode + " " + msg +
-                "</h1></body></html>";
-        return new Response(statusCode, "text/html", html.getBytes(StandardCharsets.UTF_8));
+        return sharedError(HTML_ERRORS, statusCode, "text/html", ErrorResponses.html(statusCode));
     }
 
-    /** Static factory: error page with JSON body. */
+    /** Static factory: error page with JSON body. Instances are shared. */
     public static Response jsonError(int statusCode) {
         if (statusCode == 204 || statusCode == 304) {
             return new Response(statusCode, "text/plain", new byte[0]);
         }
-        String msg = HttpUtils.getStatusMessage(statusCode);
-        String json = "{\"error\": \"" + msg + "\", \"code\": " + statusCode + "}";
-        return new Response(statusCode, "application/json", json.getBytes(StandardCharsets.UTF_8));
+        return sharedError(JSON_ERRORS, statusCode, "application/json", ErrorResponses.json(statusCode));
+    }
+
+    private static Response sharedError(Map<Integer, Response> cache, int statusCode, String mimeType,
+            byte[] page) {
+        Response cached = cache.get(statusCode);
+        if (cached == null || cached.body != page) {
+            cached = new Response(statusCode, mimeType, page);
+            cache.put(statusCode, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Static factory: a response completed later by an asynchronous handler,
+     * with the default timeout. The worker thread is released while the
+     * future is pending.
+     */
+    public static Response async(CompletableFuture<Response> future) {
+        return async(future, DEFAULT_ASYNC_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Static factory: a response completed later by an asynchronous handler.
+     * If the future does not complete in time the client gets a 504; a
+     * failed or null result becomes a 500. The future itself is never
+     * completed or cancelled here, as it may be shared with other callers;
+     * to stop the work behind it on a timeout or disconnect, use
+     * {@link Request#onCancel(Runnable)} and the request's deadline.
+     *
+     * @param future        the handler's result
+     * @param timeoutMillis how long to wait for it
+     * @return a placeholder response resolved when the future completes
+     */
+    public static Response async(CompletableFuture<Response> future, long timeoutMillis) {
+        Response response = new Response(200, "text/plain", new byte[0]);
+        response.pending = future.copy().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((result, failure) -> {
+                    if (failure == null) {
+                        return (result != null) ? result : error(500);
+                    }
+                    Throwable cause = (failure instanceof CompletionException && failure.getCause() != null)
+                            ? failure.getCause()
+                            : failure;
+                    if (cause instanceof TimeoutException) {
+                        Logger.wrn("Async handler timed out after " + timeoutMillis + "ms");
+                        return error(504);
+                    }
+                    Logger.err("Async handler failed: " + cause);
+                    return error(500);
+                });
+        return response;
     }
 
     /** Static factory: render a JHP file with a Context. */
     public static Response render(File file, Context context) throws IOException {
-        JhpEngine engine = JhpEngine.getInstance();
+        // Get the canonical path and the engine of the web root containing it
+        String filePath = file.getCanonicalPath();
+        JhpEngine engine = JhpEngine.forFile(filePath);
         if (engine == null) {
             throw new IllegalStateException("JhpEngine not initialized. Call JhpEngine.initialize() first.");
         }
 
         try {
-            // Get the canonical path and extract relative path from webroot
-            String filePath = file.getCanonicalPath();
+            // Extract relative path from webroot
             String webRoot = engine.getWebRoot();
 
             if (!filePath.startsWith(webRoot)) {
@@ -164,12 +225,12 @@ public class Response {
             String rendered = engine.render(relativePath, context);
             byte[] data = rendered.getBytes(StandardCharsets.UTF_8);
             return new Response(200, "text/html", data);
+        } catch (RequestCancelledException e) {
+            throw e;
         } catch (Exception e) {
+            // The detail is logged only: it may hold paths or template source
             Logger.err("JHP rendering failed for " + file.getName() + ": " + e.getMessage());
-            String errorMsg = (e.getMessage() != null && !e.getMessage().isEmpty())
-                    ? e.getMessage()
-                    : "JHP rendering failed";
-            return new Response(500, "text/html", errorMsg.getBytes(StandardCharsets.UTF_8));
+            return error(500);
         }
     }
 
@@ -180,12 +241,18 @@ public class Response {
 
     /** Convert to a low-level HttpResponse (for sending over socket). */
     public HttpResponse toHttpResponse() {
-        return new HttpResponse(statusCode, statusMessage, body, mimeType, headers, cookies);
+        if (pending != null) {
+            return HttpResponse.deferred(toFuture().thenApply(Response::toHttpResponse));
+        }
+        // Copy cookies: the HttpResponse may add its own, and Responses can be shared
+        return new HttpResponse(statusCode, statusMessage, body, mimeType, headers, new ArrayList<>(cookies));
     }
 
     /**
      * Creates a new Response with an additional cookie.
      * This method returns a new Response instance with the cookie added.
+     * For an asynchronous response the cookie is added to the result once
+     * it completes.
      * 
      * @param cookie Cookie to add
      * @return New Response instance with the cookie
@@ -193,7 +260,39 @@ public class Response {
     public Response withCookie(Cookie cookie) {
         List<Cookie> newCookies = new ArrayList<>(this.cookies);
         newCookies.add(cookie);
-        return new Response(statusCode, mimeType, body, new HashMap<>(headers), newCookies);
+        Response response = new Response(statusCode, mimeType, body, new HashMap<>(headers), newCookies);
+        if (pending != null) {
+            response.pending = pending.thenApply(result -> result.withCookie(cookie));
+        }
+        return response;
+    }
+
+    /**
+     * Gets the HTTP status code of this response.
+     * 
+     * @return Status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns whether this response is a placeholder for an asynchronous
+     * handler's result.
+     */
+    public boolean isAsync() {
+        return pending != null;
+    }
+
+    /**
+     * Returns this response's final result: the response itself if it is
+     * synchronous, otherwise the asynchronous handler's (possibly itself
+     * asynchronous) result once it completes.
+     *
+     * @return future of the final, synchronous response
+     */
+    public CompletableFuture<Response> toFuture() {
+        return (pending == null) ? CompletableFuture.completedFuture(this) : pending.thenCompose(Response::toFuture);
     }
 
     /**
@@ -1,8 +1,13 @@
 package com.hindbiswas.server.routing;
 
+import com.hindbiswas.server.cache.RouteCache;
+import com.hindbiswas.server.cache.RouteCacheConfig;
 import com.hindbiswas.server.handler.RouteHandler;
+import com.hindbiswas.server.http.HttpMethod;
 import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.HttpUtils;
 import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
 import com.hindbiswas.server.http.Response;
 import com.hindbiswas.server.logger.Logger;
 
@@ -12,35 +17,96 @@ import java.util.Map;
 
 /**
  * AbstractMethodRouter: Base class for route based routers.
- * Stores route handlers for all HTTP methods.
+ * Stores route handlers for all HTTP methods in one {@link RouteTree} per
+ * method, so paths may contain parameters such as {@code /api/todos/{id:int}}
+ * and wildcards such as {@code /files/*}. Captured values are available from
+ * {@link Request#getPathParam(String)}.
+ *
+ * <p>
+ * Routes are compiled into an immutable {@link DispatchTable} when the server
+ * starts; no routes may be added afterwards. HEAD requests fall back to GET
+ * routes, OPTIONS is answered automatically from the routes of the path, and
+ * a request whose path is routed only for other methods gets a 405 with an
+ * {@code Allow} header.
+ * </p>
+ *
+ * <p>
+ * {@link Filter}s added with {@link #use(Filter)} wrap the whole dispatch,
+ * fallbacks included, and are composed into a fixed chain at the same time.
+ * </p>
  */
 public abstract class AbstractMethodRouter implements Router {
-    protected final Map<String, Map<String, RouteHandler>> routes = new HashMap<>();
+    protected final Map<String, RouteTree<RouteHandler>> routes = new HashMap<>();
+
+    private final FilterPipeline filters = new FilterPipeline();
+    private volatile DispatchTable table;
 
     public AbstractMethodRouter() {
         for (String method : new String[] { "GET", "POST", "PUT", "PATCH", "DELETE" }) {
-            routes.put(method, new HashMap<>());
+            routes.put(method, new RouteTree<>());
         }
     }
 
     public void get(String path, RouteHandler handler) {
-        routes.get("GET").put(path, handler);
+        register("GET", path, handler);
+    }
+
+    /**
+     * Registers a GET route whose responses are cached.
+     *
+     * @param path    the path pattern
+     * @param handler the handler
+     * @param cache   TTL, size and key settings for the route's cache
+     */
+    public void get(String path, RouteHandler handler, RouteCacheConfig cache) {
+        register("GET", path, new RouteCache(handler, cache));
     }
 
     public void post(String path, RouteHandler handler) {
-        routes.get("POST").put(path, handler);
+        register("POST", path, handler);
     }
 
     public void put(String path, RouteHandler handler) {
-        routes.get("PUT").put(path, handler);
+        register("PUT", path, handler);
     }
 
     public void patch(String path, RouteHandler handler) {
-        routes.get("PATCH").put(path, handler);
+        register("PATCH", path, handler);
     }
 
     public void delete(String path, RouteHandler handler) {
-        routes.get("DELETE").put(path, handler);
+        register("DELETE", path, handler);
+    }
+
+    private synchronized void register(String method, String path, RouteHandler handler) {
+        if (table != null) {
+            throw new IllegalStateException("Cannot add routes after the router has been frozen.");
+        }
+        routes.get(method).insert(path, handler);
+    }
+
+    /**
+     * Adds a filter run around every request this router resolves, including
+     * fallbacks. Filters run in the order they were added.
+     *
+     * @param filter the filter
+     * @throws IllegalStateException if the router has been frozen
+     */
+    public void use(Filter filter) {
+        filters.add(filter);
+    }
+
+    /**
+     * Compiles the registered routes into an immutable dispatch table and
+     * composes the filter chain. Called by the server on start, or lazily by
+     * the first request.
+     */
+    @Override
+    public synchronized void freeze() {
+        if (table == null) {
+            table = DispatchTable.compile(routes);
+            filters.compile(this::dispatch);
+        }
     }
 
     @Override
@@ -48,23 +114,56 @@ public abstract class AbstractMethodRouter implements Router {
         if (request.method == null || request.path == null) {
             return Response.error(400).toHttpResponse();
         }
+        if (table == null) {
+            freeze();
+        }
+        return filters.resolve(request, webRoot);
+    }
 
-        Map<String, RouteHandler> methodRoutes = routes.get(request.method.toUpperCase());
-
-        if (methodRoutes != null) {
-            RouteHandler handler = methodRoutes.get(request.path);
-            if (handler != null) {
-                try {
-                    return handler.handle(request).toHttpResponse();
-                } catch (Exception e) {
-                    Logger.err("Handler exception for " + request.method + " " + request.path + ": " + e.getMessage());
-                    return Response.error(500).toHttpResponse();
-                }
+    private HttpResponse dispatch(Request request, File webRoot) {
+        DispatchTable table = this.table;
+        HttpMethod method = request.getMethod();
+        RouteHandler handler = (method != null) ? table.find(request, method) : null;
+        if (handler != null) {
+            try {
+                return handler.handle(request).toHttpResponse();
+            } catch (RequestCancelledException e) {
+                Logger.dbg("Handler stopped for " + request.method + " " + request.path + ": " + e.getMessage());
+                return Response.error(e.isExpired() ? 504 : 503).toHttpResponse();
+            } catch (Exception e) {
+                Logger.err("Handler exception for " + request.method + " " + request.path + ": " + e.getMessage());
+                return Response.error(500).toHttpResponse();
             }
         }
+
+        String allow = table.allowed(request.path);
+        if (allow != null) {
+            if (method == HttpMethod.OPTIONS) {
+                HttpResponse response = new HttpResponse(204, HttpUtils.getStatusMessage(204), new byte[0],
+                        "text/plain");
+                response.setHeader("Allow", allow);
+                return response;
+            }
+            return methodNotAllowed(request, webRoot, allow);
+        }
         return fallback(request, webRoot);
     }
 
+    /**
+     * Called when routes exist for the path, but none for the request's
+     * method. Answers 405 with the {@code Allow} header by default.
+     *
+     * @param request the request
+     * @param webRoot the root directory for static file serving
+     * @param allow   the methods routed for the path
+     * @return the response
+     */
+    protected HttpResponse methodNotAllowed(Request request, File webRoot, String allow) {
+        HttpResponse response = Response.error(405).toHttpResponse();
+        response.setHeader("Allow", allow);
+        return response;
+    }
+
     /**
      * Called when no route matches. Can be overridden.
      */
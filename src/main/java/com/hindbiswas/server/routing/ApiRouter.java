@@ -8,11 +8,18 @@ import java.io.File;
 
 /**
  * ApiRouter: Strict router that only handles defined API routes.
- * Returns 404 for unmatched paths.
+ * Returns 404 for unmatched paths and 405 for unrouted methods, as JSON.
  */
 public class ApiRouter extends AbstractMethodRouter {
     @Override
     protected HttpResponse fallback(Request request, File webRoot) {
         return Response.jsonError(404).toHttpResponse();
     }
+
+    @Override
+    protected HttpResponse methodNotAllowed(Request request, File webRoot, String allow) {
+        HttpResponse response = Response.jsonError(405).toHttpResponse();
+        response.setHeader("Allow", allow);
+        return response;
+    }
 }
@@ -0,0 +1,460 @@
+package com.hindbiswas.server.routing;
+
+import com.hindbiswas.server.handler.FanOut;
+import com.hindbiswas.server.http.Cookie;
+import com.hindbiswas.server.http.HttpMethod;
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
+import com.hindbiswas.server.http.Response;
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * BatchFilter: Serves several API calls in one round trip.
+ *
+ * <p>
+ * A POST of a JSON array of sub-requests to the batch path is answered with
+ * a JSON array of their responses, in order. Each sub-request runs through
+ * the rest of the router in-process, filters included, and shares the batch
+ * request's cookies, deadline and session; the session is loaded and saved
+ * once. Consecutive safe requests (GET, HEAD, OPTIONS) run in parallel; any
+ * other request runs on its own, after everything before it.
+ * </p>
+ *
+ * <pre>{@code
+ * router.use(new BatchFilter("/api/batch"));
+ *
+ * POST /api/batch
+ * [{"method": "GET", "path": "/api/todos"},
+ *  {"method": "POST", "path": "/api/todos", "body": {"title": "Milk"}}]
+ *
+ * [{"status": 200, "headers": {"Content-Type": "application/json"}, "body": [...]},
+ *  {"status": 200, "headers": {"Content-Type": "application/json"}, "body": {...}}]
+ * }</pre>
+ */
+public class BatchFilter implements Filter {
+    private final String path;
+    private int maxRequests = 20;
+    private boolean parallel = true;
+
+    /** A parsed sub-request */
+    private record Entry(String method, String path, Map<String, String> headers, Map<String, String> body) {
+    }
+
+    /**
+     * Creates a batch endpoint.
+     *
+     * @param path the path batches are posted to, e.g. "/api/batch"
+     */
+    public BatchFilter(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Sets the largest number of sub-requests in a batch. Larger batches are
+     * answered with 413. Defaults to 20.
+     */
+    public BatchFilter setMaxRequests(int maxRequests) {
+        if (maxRequests < 1)
+            throw new IllegalArgumentException("Max requests must be at least 1.");
+        this.maxRequests = maxRequests;
+        return this;
+    }
+
+    /**
+     * Sets whether consecutive safe sub-requests run in parallel. Defaults to
+     * true.
+     */
+    public BatchFilter setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    @Override
+    public HttpResponse filter(Request request, File webRoot, Router next) {
+        if (!path.equals(request.path) || request.isSubRequest()) {
+            return next.resolve(request, webRoot);
+        }
+        if (request.getMethod() != HttpMethod.POST) {
+            HttpResponse response = Response.jsonError(405).toHttpResponse();
+            response.setHeader("Allow", "POST");
+            return response;
+        }
+
+        List<Entry> entries;
+        try {
+            entries = parse(request.body.get("raw"));
+        } catch (IllegalArgumentException e) {
+            Logger.dbg("Invalid batch: " + e.getMessage());
+            return Response.json("{\"error\": \"" + escape(e.getMessage()) + "\"}", 400).toHttpResponse();
+        }
+        if (entries.size() > maxRequests) {
+            return Response.jsonError(413).toHttpResponse();
+        }
+
+        HttpResponse[] responses = new HttpResponse[entries.size()];
+        int start = 0;
+        while (start < entries.size()) {
+            int end = start + 1;
+            if (parallel && isSafe(entries.get(start))) {
+                while (end < entries.size() && isSafe(entries.get(end))) {
+                    end++;
+                }
+            }
+            run(request, webRoot, next, entries, start, end, responses);
+            start = end;
+        }
+        return combine(responses);
+    }
+
+    /** Runs entries [start, end) and stores their responses */
+    private void run(Request request, File webRoot, Router next, List<Entry> entries, int start, int end,
+            HttpResponse[] responses) {
+        if (end - start == 1) {
+            responses[start] = dispatch(request, webRoot, next, entries.get(start));
+            return;
+        }
+        List<Callable<HttpResponse>> tasks = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            Entry entry = entries.get(i);
+            tasks.add(() -> dispatch(request, webRoot, next, entry));
+        }
+        List<HttpResponse> results = FanOut.all(request, tasks);
+        for (int i = start; i < end; i++) {
+            responses[i] = results.get(i - start);
+        }
+    }
+
+    private HttpResponse dispatch(Request request, File webRoot, Router next, Entry entry) {
+        Request sub = request.subRequest(entry.method(), entry.path(), entry.headers(), entry.body());
+        if (path.equals(sub.path)) {
+            return Response.jsonError(400).toHttpResponse(); // No nested batches
+        }
+        try {
+            HttpResponse response = sub.getContext().call(() -> next.resolve(sub, webRoot));
+            while (response.getDeferred() != null) {
+                HttpResponse placeholder = response;
+                response = placeholder.complete(placeholder.getDeferred().join());
+            }
+            return response;
+        } catch (RequestCancelledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            Logger.err("Batch sub-request failed for " + sub.method + " " + sub.path + ": " + e.getMessage());
+            return Response.jsonError(500).toHttpResponse();
+        }
+    }
+
+    private static boolean isSafe(Entry entry) {
+        HttpMethod method = HttpMethod.of(entry.method());
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+
+    /** Builds the combined response; sub-response cookies are passed on */
+    private static HttpResponse combine(HttpResponse[] responses) {
+        StringBuilder sb = new StringBuilder("[");
+        List<Cookie> cookies = new ArrayList<>();
+        for (int i = 0; i < responses.length; i++) {
+            HttpResponse response = responses[i];
+            if (i > 0)
+                sb.append(", ");
+            sb.append("{\"status\": ").append(response.getStatusCode()).append(", \"headers\": {");
+            sb.append("\"Content-Type\": \"").append(escape(response.getMimeType())).append('"');
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                sb.append(", \"").append(escape(header.getKey())).append("\": \"")
+                        .append(escape(header.getValue())).append('"');
+            }
+            sb.append("}, ");
+            appendBody(sb, response);
+            sb.append('}');
+
+            cookies.addAll(response.getCookies());
+            response.release();
+        }
+        sb.append(']');
+
+        HttpResponse combined = Response.json(sb.toString()).toHttpResponse();
+        cookies.forEach(combined::addCookie);
+        return combined;
+    }
+
+    private static void appendBody(StringBuilder sb, HttpResponse response) {
+        byte[] body = response.getBody();
+        String mime = response.getMimeType();
+        boolean json = mime.contains("json");
+        if (body.length == 0) {
+            sb.append("\"body\": null");
+        } else if (json || mime.startsWith("text/") || mime.contains("xml") || mime.contains("javascript")) {
+            String text = new String(body, StandardCharsets.UTF_8);
+            if (json && isJson(text)) {
+                sb.append("\"body\": ").append(text);
+            } else {
+                sb.append("\"body\": \"").append(escape(text)).append('"');
+            }
+        } else {
+            sb.append("\"encoding\": \"base64\", \"body\": \"").append(Base64.getEncoder().encodeToString(body))
+                    .append('"');
+        }
+    }
+
+    /** Whether a handler's JSON body is valid, and so safe to splice into the batch */
+    private static boolean isJson(String text) {
+        try {
+            JsonReader reader = new JsonReader(text);
+            reader.readValue();
+            reader.expectEnd();
+            return true;
+        } catch (IllegalArgumentException e) {
+            Logger.wrn("Batch sub-response is not valid JSON, sending it as a string: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null)
+            return "";
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // ==================== Parsing ====================
+
+    /**
+     * Parses the batch: an array of objects with "method" (default GET),
+     * "path", and optional "headers" and "body" objects of scalar values.
+     */
+    private static List<Entry> parse(String json) {
+        if (json == null || json.isBlank()) {
+            throw new IllegalArgumentException("Expected a JSON array of requests");
+        }
+        JsonReader reader = new JsonReader(json);
+        Object value = reader.readValue();
+        reader.expectEnd();
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("Expected a JSON array of requests");
+        }
+
+        List<Entry> entries = new ArrayList<>(list.size());
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> object) || !(object.get("path") instanceof String path)
+                    || !path.startsWith("/")) {
+                throw new IllegalArgumentException("Each request needs an absolute \"path\"");
+            }
+            Object method = object.get("method");
+            entries.add(new Entry(
+                    (method instanceof String name) ? name : "GET",
+                    path,
+                    strings(object.get("headers")),
+                    strings(object.get("body"))));
+        }
+        return entries;
+    }
+
+    private static Map<String, String> strings(Object value) {
+        Map<String, String> result = new HashMap<>();
+        if (value instanceof Map<?, ?> map) {
+            map.forEach((k, v) -> {
+                if (v != null)
+                    result.put(k.toString(), v.toString());
+            });
+        } else if (value != null) {
+            throw new IllegalArgumentException("\"headers\" and \"body\" must be objects");
+        }
+        return result;
+    }
+
+    /** Minimal JSON reader: objects, arrays, strings, numbers, booleans, null */
+    private static final class JsonReader {
+        private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+
+        private final String json;
+        private int pos = 0;
+
+        JsonReader(String json) {
+            this.json = json;
+        }
+
+        Object readValue() {
+            skipWhitespace();
+            if (pos >= json.length())
+                throw error("Unexpected end of JSON");
+            char c = json.charAt(pos);
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    return readLiteral("true", Boolean.TRUE);
+                case 'f':
+                    return readLiteral("false", Boolean.FALSE);
+                case 'n':
+                    return readLiteral("null", null);
+                default:
+                    return readNumber();
+            }
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (pos < json.length())
+                throw error("Unexpected data after JSON value");
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            pos++; // {
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"')
+                    throw error("Expected an object key");
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> array = new ArrayList<>();
+            pos++; // [
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String readString() {
+            StringBuilder sb = new StringBuilder();
+            pos++; // opening quote
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '"')
+                    return sb.toString();
+                if (c < 0x20)
+                    throw error("Unescaped control character in string");
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= json.length())
+                    break;
+                char escaped = json.charAt(pos++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> sb.append(escaped);
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > json.length())
+                            throw error("Invalid unicode escape");
+                        try {
+                            sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("Invalid escape '\\" + escaped + "'");
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private Object readLiteral(String literal, Object value) {
+            if (!json.startsWith(literal, pos))
+                throw error("Unexpected token");
+            pos += literal.length();
+            return value;
+        }
+
+        private String readNumber() {
+            int start = pos;
+            while (pos < json.length() && "+-0123456789.eE".indexOf(json.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos)
+                throw error("Unexpected character '" + json.charAt(pos) + "'");
+            String number = json.substring(start, pos);
+            if (!NUMBER.matcher(number).matches())
+                throw error("Invalid number '" + number + "'");
+            return number; // Numbers are only used as strings
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= json.length())
+                throw error("Unexpected end of JSON");
+            return json.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c)
+                throw error("Expected '" + c + "'");
+            pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+}
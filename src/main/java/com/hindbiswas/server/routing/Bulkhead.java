@@ -0,0 +1,205 @@
+package com.hindbiswas.server.routing;
+
+import com.hindbiswas.server.handler.RouteHandler;
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.Response;
+import com.hindbiswas.server.logger.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulkhead: Caps how many requests a route, or a group of routes sharing the
+ * bulkhead, may run at once, so a slow route cannot take every worker.
+ *
+ * <p>
+ * Requests over the limit wait up to {@link #setMaxWaitMillis(long)} for a
+ * slot and are otherwise answered with 503. With an executor, handlers run
+ * there as asynchronous responses and the connection's worker thread is
+ * released meanwhile; such a response times out with 504 after
+ * {@link #setAsyncTimeoutMillis(long)}. A slot is held until the handler's
+ * response completes, even past that timeout.
+ * </p>
+ *
+ * <pre>{@code
+ * Bulkhead reports = new Bulkhead("reports", 2).setMaxWaitMillis(1000);
+ * router.get("/reports/daily", reports.wrap(request -> Response.json(buildDaily())));
+ * }</pre>
+ */
+public class Bulkhead {
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private long maxWaitMillis = 0;
+    private Executor executor;
+    private long asyncTimeoutMillis = Response.DEFAULT_ASYNC_TIMEOUT_MILLIS;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a bulkhead.
+     *
+     * @param name          name used in logs
+     * @param maxConcurrent the number of requests that may run at once
+     */
+    public Bulkhead(String name, int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Bulkhead needs at least one slot: " + maxConcurrent);
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Sets how long a request waits for a free slot before it is rejected.
+     * Zero rejects immediately when the bulkhead is full.
+     */
+    public Bulkhead setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+        return this;
+    }
+
+    /**
+     * Runs handlers on a separate executor instead of the server's workers.
+     */
+    public Bulkhead setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets how long the client waits for a handler run on the executor before
+     * it is answered with 504. Defaults to
+     * {@link Response#DEFAULT_ASYNC_TIMEOUT_MILLIS}.
+     */
+    public Bulkhead setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Wraps a handler so it runs inside this bulkhead.
+     *
+     * @param handler the route handler
+     * @return the limited handler, to register in its place
+     */
+    public RouteHandler wrap(RouteHandler handler) {
+        return request -> handle(handler, request);
+    }
+
+    private Response handle(RouteHandler handler, Request request) {
+        if (!acquire()) {
+            rejected.increment();
+            Logger.dbg("Bulkhead " + name + " rejected " + request.method + " " + request.path);
+            return Response.error(503);
+        }
+        accepted.increment();
+
+        if (executor != null) {
+            try {
+                return Response.async(CompletableFuture
+                        .supplyAsync(() -> request.getContext().call(() -> run(handler, request)), executor)
+                        .thenCompose(Response::toFuture), asyncTimeoutMillis);
+            } catch (RejectedExecutionException e) {
+                release();
+                rejected.increment();
+                return Response.error(503);
+            }
+        }
+        return run(handler, request);
+    }
+
+    /** Runs the handler, holding the slot until its response is final */
+    private Response run(RouteHandler handler, Request request) {
+        boolean handedOff = false;
+        try {
+            Response response = handler.handle(request);
+            if (response != null && response.isAsync()) {
+                response.toFuture().whenComplete((result, error) -> release());
+                handedOff = true; // The callback owns the slot now
+            }
+            return response;
+        } finally {
+            if (!handedOff) {
+                release();
+            }
+        }
+    }
+
+    private boolean acquire() {
+        boolean acquired = permits.tryAcquire();
+        if (!acquired && maxWaitMillis > 0) {
+            queued.increment();
+            waiting.incrementAndGet();
+            try {
+                acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        if (acquired) {
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        }
+        return acquired;
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /** Requests currently running inside the bulkhead */
+    public int getActive() {
+        return active.get();
+    }
+
+    /** Requests currently waiting for a slot */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /** Highest number of requests that ran at once */
+    public int getPeakActive() {
+        return peakActive.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /** Requests that had to wait for a slot, whether they got one or not */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public void logStats() {
+        Logger.log(String.format("Bulkhead %s: %d/%d active (peak %d), %d waiting, %d accepted, %d queued, %d rejected",
+                name, getActive(), maxConcurrent, getPeakActive(), getWaiting(), getAccepted(), getQueued(),
+                getRejected()));
+    }
+}
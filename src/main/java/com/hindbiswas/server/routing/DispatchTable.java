@@ -0,0 +1,312 @@
+package com.hindbiswas.server.routing;
+
+import com.hindbiswas.server.handler.RouteHandler;
+import com.hindbiswas.server.http.HttpMethod;
+import com.hindbiswas.server.http.Request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The immutable, compiled form of a method router's routes.
+ *
+ * <p>
+ * Literal paths live in a single hash map whose entries hold one handler
+ * slot per {@link HttpMethod} and the precomputed {@code Allow} header for
+ * the path. Patterned routes live in one {@link RouteTree} per method. A
+ * lookup is an ordinal index plus either a hash probe or one tree walk;
+ * HEAD is answered by the GET handler when no HEAD handler exists.
+ * </p>
+ *
+ * <p>
+ * The {@code Allow} header for patterned paths is precomputed per route
+ * shape (a pattern without its parameter names) and kept in one more tree,
+ * so a 405 or OPTIONS answer costs a single walk. A shape's value lists the
+ * methods of every shape that covers it. Where shapes only partly overlap,
+ * e.g. {@code /a/{x}/b} and {@code /a/b/{y}}, the methods allowed depend on
+ * the path itself and each method's tree is walked instead.
+ * </p>
+ */
+final class DispatchTable {
+
+    private record ExactRoute(RouteHandler[] handlers, String allow) {
+    }
+
+    /**
+     * A pattern reduced to its segments: literal text or a parameter type,
+     * and whether a wildcard follows them.
+     */
+    private record Shape(List<Object> segments, boolean wildcard, boolean[] methods) {
+    }
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Map<String, ExactRoute> exact;
+    private final RouteTree<RouteHandler>[] patterns;
+
+    /** Allow value per shape; a null value means it depends on the path */
+    private final RouteTree<String> allows = new RouteTree<>();
+
+    private DispatchTable(Map<String, ExactRoute> exact, RouteTree<RouteHandler>[] patterns) {
+        this.exact = exact;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Compiles registered routes, keyed by upper-case method name.
+     *
+     * @param routes the routes to compile
+     * @return the dispatch table
+     */
+    @SuppressWarnings("unchecked")
+    static DispatchTable compile(Map<String, RouteTree<RouteHandler>> routes) {
+        Map<String, RouteHandler[]> literals = new HashMap<>();
+        RouteTree<RouteHandler>[] patterns = new RouteTree[HttpMethod.count()];
+        Map<String, Shape> shapes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, RouteTree<RouteHandler>> entry : routes.entrySet()) {
+            HttpMethod method = HttpMethod.of(entry.getKey());
+            if (method == null) {
+                continue;
+            }
+            for (RouteTree.Route<RouteHandler> route : entry.getValue().getRoutes()) {
+                if (isLiteral(route.pattern())) {
+                    literals.computeIfAbsent(route.pattern(), k -> new RouteHandler[HttpMethod.count()])
+                            [method.ordinal()] = route.value();
+                } else {
+                    if (patterns[method.ordinal()] == null) {
+                        patterns[method.ordinal()] = new RouteTree<>();
+                    }
+                    patterns[method.ordinal()].insert(route.pattern(), route.value());
+                    shapeOf(route.pattern(), shapes).methods()[method.ordinal()] = true;
+                }
+            }
+        }
+
+        DispatchTable table = new DispatchTable(new HashMap<>(), patterns);
+        for (Map.Entry<String, RouteHandler[]> literal : literals.entrySet()) {
+            String path = literal.getKey();
+            RouteHandler[] handlers = literal.getValue();
+            table.exact.put(path, new ExactRoute(handlers, table.buildAllow(path, handlers)));
+        }
+        for (Map.Entry<String, Shape> entry : shapes.entrySet()) {
+            table.allows.insert(entry.getKey(), allowFor(entry.getValue(), shapes.values()));
+        }
+        return table;
+    }
+
+    /**
+     * Finds or adds the shape of a pattern, keyed by the pattern with its
+     * parameters renamed, so patterns differing only in names share it.
+     */
+    private static Shape shapeOf(String pattern, Map<String, Shape> shapes) {
+        List<Object> segments = new ArrayList<>();
+        StringBuilder key = new StringBuilder();
+        boolean wildcard = false;
+        for (String segment : pattern.substring(1).split("/", -1)) {
+            key.append('/');
+            if (segment.startsWith("*")) {
+                wildcard = true;
+                key.append('*');
+                break;
+            }
+            if (segment.startsWith("{")) {
+                int colon = segment.indexOf(':');
+                RouteTree.ParamType type = (colon < 0)
+                        ? RouteTree.ParamType.STRING
+                        : RouteTree.ParamType.of(segment.substring(colon + 1, segment.length() - 1));
+                segments.add(type);
+                key.append("{p:").append(type.name().toLowerCase(Locale.ROOT)).append('}');
+            } else {
+                segments.add(segment);
+                key.append(segment);
+            }
+        }
+        boolean hasWildcard = wildcard;
+        return shapes.computeIfAbsent(key.toString(),
+                k -> new Shape(segments, hasWildcard, new boolean[HttpMethod.count()]));
+    }
+
+    /**
+     * Computes the Allow value of a shape: the methods of every shape that
+     * matches all of its paths. Returns null if another shape matches only
+     * some of them.
+     */
+    private static String allowFor(Shape shape, Iterable<Shape> shapes) {
+        boolean[] allowed = new boolean[HttpMethod.count()];
+        for (Shape other : shapes) {
+            if (covers(other, shape)) {
+                for (int i = 0; i < allowed.length; i++) {
+                    allowed[i] |= other.methods()[i];
+                }
+            } else if (overlaps(other, shape)) {
+                return null;
+            }
+        }
+        return format(allowed);
+    }
+
+    /** Whether every path matching {@code inner} also matches {@code outer} */
+    private static boolean covers(Shape outer, Shape inner) {
+        int fixed = outer.segments().size();
+        if (outer.wildcard()) {
+            // The wildcard matches the rest of the path, however many segments
+            int innerFixed = inner.segments().size();
+            if (innerFixed < fixed || (innerFixed == fixed && !inner.wildcard())) {
+                return false;
+            }
+        } else if (inner.wildcard() || inner.segments().size() != fixed) {
+            return false;
+        }
+        for (int i = 0; i < fixed; i++) {
+            if (!covers(outer.segments().get(i), inner.segments().get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean covers(Object outer, Object inner) {
+        if (outer instanceof String text) {
+            return text.equals(inner);
+        }
+        RouteTree.ParamType type = (RouteTree.ParamType) outer;
+        if (inner instanceof String text) {
+            return type.accepts(text, 0, text.length());
+        }
+        return type == inner || type == RouteTree.ParamType.STRING
+                || (type == RouteTree.ParamType.LONG && inner == RouteTree.ParamType.INT);
+    }
+
+    /** Whether some path matches both shapes */
+    private static boolean overlaps(Shape a, Shape b) {
+        int sizeA = a.segments().size();
+        int sizeB = b.segments().size();
+        if (!a.wildcard() && !b.wildcard() && sizeA != sizeB) {
+            return false;
+        }
+        if ((a.wildcard() && !b.wildcard() && sizeB <= sizeA) || (b.wildcard() && !a.wildcard() && sizeA <= sizeB)) {
+            return false;
+        }
+        for (int i = 0; i < Math.min(sizeA, sizeB); i++) {
+            if (!overlaps(a.segments().get(i), b.segments().get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean overlaps(Object a, Object b) {
+        if (a instanceof String text) {
+            return (b instanceof String other) ? text.equals(other) : covers(b, a);
+        }
+        if (b instanceof String) {
+            return covers(a, b);
+        }
+        return a == b || a == RouteTree.ParamType.STRING || b == RouteTree.ParamType.STRING
+                || (a != RouteTree.ParamType.UUID && b != RouteTree.ParamType.UUID);
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return !pattern.contains("/{") && !pattern.contains("/*");
+    }
+
+    /**
+     * Finds the handler for a request and sets its path parameters.
+     *
+     * @param request the request
+     * @param method  the request's method
+     * @return the handler, or null if no route matches this method
+     */
+    RouteHandler find(Request request, HttpMethod method) {
+        ExactRoute route = exact.get(request.path);
+        if (route != null) {
+            RouteHandler handler = route.handlers()[method.ordinal()];
+            if (handler == null && method == HttpMethod.HEAD) {
+                handler = route.handlers()[HttpMethod.GET.ordinal()];
+            }
+            if (handler != null) {
+                return handler;
+            }
+        }
+
+        RouteHandler handler = findPattern(request, method);
+        if (handler == null && method == HttpMethod.HEAD) {
+            handler = findPattern(request, HttpMethod.GET);
+        }
+        return handler;
+    }
+
+    private RouteHandler findPattern(Request request, HttpMethod method) {
+        RouteTree<RouteHandler> tree = patterns[method.ordinal()];
+        if (tree == null) {
+            return null;
+        }
+        int maxParams = tree.getMaxParams();
+        String[] values = (maxParams == 0) ? NO_VALUES : new String[maxParams];
+        RouteTree.Route<RouteHandler> route = tree.match(request.path, values);
+        if (route == null) {
+            return null;
+        }
+        request.setPathParams(route.paramNames(), values);
+        return route.value();
+    }
+
+    /**
+     * Returns the {@code Allow} header value for a path: every method with a
+     * matching route, plus HEAD for GET routes and OPTIONS.
+     *
+     * @param path the request path
+     * @return the header value, or null if no route matches the path at all
+     */
+    String allowed(String path) {
+        ExactRoute route = exact.get(path);
+        if (route != null) {
+            return route.allow();
+        }
+        int maxParams = allows.getMaxParams();
+        RouteTree.Route<String> shape = allows.match(path, (maxParams == 0) ? NO_VALUES : new String[maxParams]);
+        if (shape == null) {
+            return null;
+        }
+        return (shape.value() != null) ? shape.value() : buildAllow(path, null);
+    }
+
+    private String buildAllow(String path, RouteHandler[] literal) {
+        boolean[] allowed = new boolean[HttpMethod.count()];
+        boolean any = false;
+        String[] values = new String[8];
+        for (int i = 0; i < allowed.length; i++) {
+            boolean matches = (literal != null && literal[i] != null);
+            if (!matches && patterns[i] != null) {
+                if (values.length < patterns[i].getMaxParams()) {
+                    values = new String[patterns[i].getMaxParams()];
+                }
+                matches = patterns[i].match(path, values) != null;
+            }
+            allowed[i] = matches;
+            any |= matches;
+        }
+        return any ? format(allowed) : null;
+    }
+
+    /** Formats methods for the Allow header, adding HEAD for GET and OPTIONS */
+    private static String format(boolean[] allowed) {
+        allowed[HttpMethod.HEAD.ordinal()] |= allowed[HttpMethod.GET.ordinal()];
+        allowed[HttpMethod.OPTIONS.ordinal()] = true;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < allowed.length; i++) {
+            if (allowed[i]) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(HttpMethod.at(i).name());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.hindbiswas.server.routing;
+
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.Request;
+
+import java.io.File;
+
+/**
+ * Filter: Cross-cutting behavior run around a router's dispatch.
+ *
+ * <p>
+ * A filter may inspect or annotate the request before calling
+ * {@code next.resolve(request, webRoot)}, adjust the response it returns
+ * (headers, cookies, timing), or short-circuit by returning its own response
+ * without calling {@code next} at all:
+ * </p>
+ *
+ * <pre>{@code
+ * router.use((request, webRoot, next) -> {
+ *     if (request.path.startsWith("/admin/") && request.getSession() == null)
+ *         return Response.redirect("/login.jhp").toHttpResponse();
+ *     HttpResponse response = next.resolve(request, webRoot);
+ *     response.setHeader("X-Frame-Options", "DENY");
+ *     return response;
+ * });
+ * }</pre>
+ */
+@FunctionalInterface
+public interface Filter {
+
+    /**
+     * Filters a request.
+     *
+     * @param request the request
+     * @param webRoot the root directory for static file serving
+     * @param next    the rest of the chain, ending in the router itself
+     * @return the response to send back
+     */
+    HttpResponse filter(Request request, File webRoot, Router next);
+}
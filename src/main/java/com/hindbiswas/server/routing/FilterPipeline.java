@@ -0,0 +1,87 @@
+package com.hindbiswas.server.routing;
+
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
+import com.hindbiswas.server.http.Response;
+import com.hindbiswas.server.logger.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The filters registered on a router, composed once into a fixed chain of
+ * links that ends in the router's own dispatch. Running the chain allocates
+ * nothing; a router without filters calls its dispatch directly.
+ */
+final class FilterPipeline {
+
+    /** One filter bound to the rest of the chain */
+    private record Link(Filter filter, Router next) implements Router {
+        @Override
+        public HttpResponse resolve(Request request, File webRoot) {
+            return filter.filter(request, webRoot, next);
+        }
+    }
+
+    private final List<Filter> filters = new ArrayList<>();
+    private volatile Router head;
+
+    /**
+     * Appends a filter; filters run in the order they were added.
+     *
+     * @param filter the filter
+     * @throws IllegalStateException if the chain has already been composed
+     */
+    synchronized void add(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null.");
+        }
+        if (head != null) {
+            throw new IllegalStateException("Cannot add filters after the router has been frozen.");
+        }
+        filters.add(filter);
+    }
+
+    /**
+     * Composes the chain in front of the given dispatch. Later calls are
+     * ignored.
+     *
+     * @param dispatch the router's own dispatch, run after every filter
+     */
+    synchronized void compile(Router dispatch) {
+        if (head != null) {
+            return;
+        }
+        Filter[] flat = filters.toArray(new Filter[0]);
+        Router next = dispatch;
+        for (int i = flat.length - 1; i >= 0; i--) {
+            next = new Link(flat[i], next);
+        }
+        head = next;
+    }
+
+    boolean isCompiled() {
+        return head != null;
+    }
+
+    /**
+     * Runs the composed chain.
+     *
+     * @param request the request
+     * @param webRoot the root directory for static file serving
+     * @return the response
+     */
+    HttpResponse resolve(Request request, File webRoot) {
+        try {
+            return head.resolve(request, webRoot);
+        } catch (RequestCancelledException e) {
+            Logger.dbg("Filter stopped for " + request.method + " " + request.path + ": " + e.getMessage());
+            return Response.error(e.isExpired() ? 504 : 503).toHttpResponse();
+        } catch (RuntimeException e) {
+            Logger.err("Filter exception for " + request.method + " " + request.path + ": " + e.getMessage());
+            return Response.error(500).toHttpResponse();
+        }
+    }
+}
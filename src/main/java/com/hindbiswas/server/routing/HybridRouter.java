@@ -1,5 +1,6 @@
 package com.hindbiswas.server.routing;
 
+import com.hindbiswas.server.http.HttpMethod;
 import com.hindbiswas.server.http.HttpResponse;
 import com.hindbiswas.server.http.Request;
 import com.hindbiswas.server.http.Response;
@@ -10,11 +11,32 @@ import java.io.File;
  * HybridRouter: Tries API routes first, falls back to static files on GET/HEAD.
  */
 public class HybridRouter extends AbstractMethodRouter {
+    private static final String STATIC_ALLOW = "GET, HEAD";
+
     @Override
     public HttpResponse fallback(Request request, File webRoot) {
-        if (request.method.equals("GET") || request.method.equals("HEAD"))
+        if (isStaticMethod(request))
+            return new HttpResponse(request, webRoot);
+
+        HttpResponse response = Response.error(405).toHttpResponse();
+        response.setHeader("Allow", STATIC_ALLOW);
+        return response;
+    }
+
+    /**
+     * Static files still answer GET/HEAD on paths routed only for other
+     * methods.
+     */
+    @Override
+    protected HttpResponse methodNotAllowed(Request request, File webRoot, String allow) {
+        if (isStaticMethod(request))
             return new HttpResponse(request, webRoot);
 
-        return Response.error(405).toHttpResponse();
+        return super.methodNotAllowed(request, webRoot, allow);
+    }
+
+    private static boolean isStaticMethod(Request request) {
+        HttpMethod method = request.getMethod();
+        return method == HttpMethod.GET || method == HttpMethod.HEAD;
     }
 }
@@ -0,0 +1,382 @@
+package com.hindbiswas.server.routing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compressed radix tree mapping path patterns to values.
+ *
+ * <p>
+ * Patterns are literal paths that may contain whole-segment parameters and a
+ * trailing wildcard:
+ * </p>
+ * <ul>
+ * <li>{@code /api/todos/{id}} matches any non-empty segment</li>
+ * <li>{@code /api/todos/{id:int}} matches only if the segment is of the given
+ * type: {@code int}, {@code long} or {@code uuid}</li>
+ * <li>{@code /static/*} or {@code /static/*path} matches the rest of the path,
+ * including slashes</li>
+ * </ul>
+ *
+ * <p>
+ * Literal text wins over parameters, typed parameters over untyped ones, and
+ * parameters over wildcards; the tree backtracks when a more specific branch
+ * fails further down. Matching walks the path once, without regular
+ * expressions, and allocates only the captured values.
+ * </p>
+ *
+ * @param <T> the value type, usually a route handler
+ */
+public final class RouteTree<T> {
+
+    /** Segment types accepted by typed parameters */
+    public enum ParamType {
+        STRING, INT, LONG, UUID;
+
+        static ParamType of(String name) {
+            switch (name) {
+                case "string":
+                    return STRING;
+                case "int":
+                    return INT;
+                case "long":
+                    return LONG;
+                case "uuid":
+                    return UUID;
+                default:
+                    throw new IllegalArgumentException("Unknown parameter type: " + name);
+            }
+        }
+
+        boolean accepts(String path, int start, int end) {
+            int length = end - start;
+            switch (this) {
+                case INT:
+                    return isInteger(path, start, end, 10) && fits(path, start, end, Integer.MIN_VALUE,
+                            Integer.MAX_VALUE);
+                case LONG:
+                    return isInteger(path, start, end, 19) && fits(path, start, end, Long.MIN_VALUE,
+                            Long.MAX_VALUE);
+                case UUID:
+                    if (length != 36) {
+                        return false;
+                    }
+                    for (int i = 0; i < 36; i++) {
+                        char c = path.charAt(start + i);
+                        boolean dash = (i == 8 || i == 13 || i == 18 || i == 23);
+                        if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                            return false;
+                        }
+                    }
+                    return true;
+                default:
+                    return length > 0;
+            }
+        }
+
+        private static boolean isInteger(String path, int start, int end, int maxDigits) {
+            if (start < end && path.charAt(start) == '-') {
+                start++;
+            }
+            if (start == end || end - start > maxDigits) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                char c = path.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean fits(String path, int start, int end, long min, long max) {
+            try {
+                long value = Long.parseLong(path, start, end, 10);
+                return value >= min && value <= max;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A registered route: its value and the names of its parameters, in the
+     * order their values are captured.
+     *
+     * @param pattern    the pattern the route was registered with
+     * @param value      the route's value
+     * @param paramNames parameter names, wildcards named "*" unless named
+     */
+    public record Route<T>(String pattern, T value, String[] paramNames) {
+    }
+
+    private static final class Node<T> {
+        /** Literal text consumed on entering the node; null for parameters */
+        String label;
+        ParamType type;
+
+        char[] indices = new char[0];
+        List<Node<T>> children = new ArrayList<>();
+        List<Node<T>> params = new ArrayList<>();
+        Node<T> wildcard;
+
+        Route<T> route;
+
+        Node(String label, ParamType type) {
+            this.label = label;
+            this.type = type;
+        }
+    }
+
+    private final Node<T> root = new Node<>("", null);
+    private final List<Route<T>> routes = new ArrayList<>();
+    private int maxParams = 0;
+
+    /**
+     * Registers a pattern, replacing any route with the same shape.
+     *
+     * @param pattern the path pattern
+     * @param value   the value to return for matching paths
+     * @return the registered route
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public Route<T> insert(String pattern, T value) {
+        if (pattern == null || !pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route pattern must start with '/': " + pattern);
+        }
+
+        Node<T> node = root;
+        List<String> names = new ArrayList<>();
+        int pos = 0;
+        while (pos < pattern.length()) {
+            char c = pattern.charAt(pos);
+            boolean segmentStart = pos > 0 && pattern.charAt(pos - 1) == '/';
+            if (c == '{' && segmentStart) {
+                int close = pattern.indexOf('}', pos);
+                int end = segmentEnd(pattern, pos);
+                if (close < 0 || close != end - 1) {
+                    throw new IllegalArgumentException("Parameter must be a whole segment: " + pattern);
+                }
+                String spec = pattern.substring(pos + 1, close);
+                int colon = spec.indexOf(':');
+                String name = (colon < 0) ? spec : spec.substring(0, colon);
+                ParamType type = (colon < 0) ? ParamType.STRING : ParamType.of(spec.substring(colon + 1));
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Parameter needs a name: " + pattern);
+                }
+                names.add(name);
+                node = paramChild(node, type);
+                pos = end;
+            } else if (c == '*' && segmentStart) {
+                String name = pattern.substring(pos + 1);
+                if (name.indexOf('/') >= 0) {
+                    throw new IllegalArgumentException("Wildcard must be the last segment: " + pattern);
+                }
+                names.add(name.isEmpty() ? "*" : name);
+                if (node.wildcard == null) {
+                    node.wildcard = new Node<>(null, null);
+                }
+                node = node.wildcard;
+                pos = pattern.length();
+            } else {
+                int end = literalEnd(pattern, pos);
+                node = insertLiteral(node, pattern.substring(pos, end));
+                pos = end;
+            }
+        }
+
+        Route<T> route = new Route<>(pattern, value, names.toArray(new String[0]));
+        if (node.route != null) {
+            routes.remove(node.route);
+        }
+        node.route = route;
+        routes.add(route);
+        maxParams = Math.max(maxParams, names.size());
+        return route;
+    }
+
+    private static int segmentEnd(String pattern, int pos) {
+        int slash = pattern.indexOf('/', pos);
+        return (slash < 0) ? pattern.length() : slash;
+    }
+
+    /** Literal text runs until a parameter or wildcard starts a segment */
+    private static int literalEnd(String pattern, int pos) {
+        for (int i = pos + 1; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if ((c == '{' || c == '*') && pattern.charAt(i - 1) == '/') {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    private Node<T> paramChild(Node<T> node, ParamType type) {
+        for (Node<T> param : node.params) {
+            if (param.type == type) {
+                return param;
+            }
+        }
+        Node<T> param = new Node<>(null, type);
+        node.params.add(param);
+        // Typed parameters are tried before plain strings
+        node.params.sort((a, b) -> Boolean.compare(a.type == ParamType.STRING, b.type == ParamType.STRING));
+        return param;
+    }
+
+    private Node<T> insertLiteral(Node<T> node, String text) {
+        while (!text.isEmpty()) {
+            int index = indexOf(node.indices, text.charAt(0));
+            if (index < 0) {
+                Node<T> child = new Node<>(text, null);
+                addChild(node, child);
+                return child;
+            }
+
+            Node<T> child = node.children.get(index);
+            int common = commonPrefix(child.label, text);
+            if (common < child.label.length()) {
+                // Split the edge: child keeps the tail of its label under a new parent
+                Node<T> split = new Node<>(child.label.substring(0, common), null);
+                child.label = child.label.substring(common);
+                addChild(split, child);
+                node.children.set(index, split);
+                child = split;
+            }
+            node = child;
+            text = text.substring(common);
+        }
+        return node;
+    }
+
+    private static <T> void addChild(Node<T> node, Node<T> child) {
+        char first = child.label.charAt(0);
+        int at = 0;
+        while (at < node.indices.length && node.indices[at] < first) {
+            at++;
+        }
+        char[] indices = new char[node.indices.length + 1];
+        System.arraycopy(node.indices, 0, indices, 0, at);
+        indices[at] = first;
+        System.arraycopy(node.indices, at, indices, at + 1, node.indices.length - at);
+        node.indices = indices;
+        node.children.add(at, child);
+    }
+
+    private static int indexOf(char[] indices, char c) {
+        int index = Arrays.binarySearch(indices, c);
+        return (index < 0) ? -1 : index;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the largest number of parameters any route captures, i.e. the
+     * size of the values array {@link #match(String, String[])} needs.
+     */
+    public int getMaxParams() {
+        return maxParams;
+    }
+
+    /**
+     * Returns every registered route, in registration order.
+     */
+    public List<Route<T>> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Matches a request path.
+     *
+     * @param path   the request path, without query string
+     * @param values receives the captured parameter values, in the order of
+     *               the matched route's {@link Route#paramNames()}; must hold
+     *               at least {@link #getMaxParams()} elements
+     * @return the matched route, or null if none matches
+     */
+    public Route<T> match(String path, String[] values) {
+        return match(root, path, 0, values, 0);
+    }
+
+    private Route<T> match(Node<T> node, String path, int pos, String[] values, int depth) {
+        int length = path.length();
+        if (pos == length && node.route != null) {
+            return node.route;
+        }
+
+        if (pos < length) {
+            int index = indexOf(node.indices, path.charAt(pos));
+            if (index >= 0) {
+                Node<T> child = node.children.get(index);
+                if (path.startsWith(child.label, pos)) {
+                    Route<T> route = match(child, path, pos + child.label.length(), values, depth);
+                    if (route != null) {
+                        return route;
+                    }
+                }
+            }
+
+            if (!node.params.isEmpty() && pos > 0 && path.charAt(pos - 1) == '/') {
+                int end = path.indexOf('/', pos);
+                if (end < 0) {
+                    end = length;
+                }
+                for (Node<T> param : node.params) {
+                    if (param.type.accepts(path, pos, end)) {
+                        Route<T> route = match(param, path, end, values, depth + 1);
+                        if (route != null) {
+                            values[depth] = decode(path.substring(pos, end));
+                            return route;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (node.wildcard != null && node.wildcard.route != null) {
+            values[depth] = decode(path.substring(pos));
+            return node.wildcard.route;
+        }
+        return null;
+    }
+
+    /**
+     * Percent-decodes a path segment (RFC 3986). Unlike form decoding, a
+     * {@code +} stays a plus sign.
+     */
+    static String decode(String value) {
+        int percent = value.indexOf('%');
+        if (percent < 0) {
+            return value;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+        int start = 0;
+        while (percent >= 0) {
+            if (percent + 2 >= value.length()) {
+                return value; // Malformed escape; hand it over as sent
+            }
+            int high = Character.digit(value.charAt(percent + 1), 16);
+            int low = Character.digit(value.charAt(percent + 2), 16);
+            if (high < 0 || low < 0) {
+                return value;
+            }
+            bytes.writeBytes(value.substring(start, percent).getBytes(StandardCharsets.UTF_8));
+            bytes.write((high << 4) | low);
+            start = percent + 3;
+            percent = value.indexOf('%', start);
+        }
+        bytes.writeBytes(value.substring(start).getBytes(StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -4,6 +4,7 @@ import com.hindbiswas.server.http.HttpResponse;
 import com.hindbiswas.server.http.Request;
 
 import java.io.File;
+import java.util.Set;
 
 /**
  * Router interface for dispatching HTTP requests to the appropriate handler or
@@ -18,4 +19,22 @@ public interface Router {
      * @return the HttpResponse to send back
      */
     HttpResponse resolve(Request request, File webRoot);
+
+    /**
+     * Prepares the router for serving. Called once by the server before it
+     * accepts connections; routers may compile their routes here and reject
+     * later changes.
+     */
+    default void freeze() {
+    }
+
+    /**
+     * Returns web roots served by this router in addition to the server's,
+     * so the server can watch them and prepare their template engines.
+     *
+     * @return the extra web roots, empty by default
+     */
+    default Set<File> getWebRoots() {
+        return Set.of();
+    }
 }
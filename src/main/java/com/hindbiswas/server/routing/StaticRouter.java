@@ -1,5 +1,6 @@
 package com.hindbiswas.server.routing;
 
+import com.hindbiswas.server.cache.AssetBundle;
 import com.hindbiswas.server.http.HttpResponse;
 import com.hindbiswas.server.http.Request;
 
@@ -7,13 +8,65 @@ import java.io.File;
 
 /**
  * StaticRouter: A router that only serves static files (no dynamic routes).
+ * Can optionally serve from a packed {@link AssetBundle}, falling back to the
+ * web root for anything the bundle does not contain.
  */
 public class StaticRouter implements Router {
+    private final AssetBundle bundle;
+    private final FilterPipeline filters = new FilterPipeline();
+
+    public StaticRouter() {
+        this(null);
+    }
+
+    /**
+     * Creates a router that serves packed assets from a bundle.
+     *
+     * @param bundle The opened bundle, or null to serve from the web root only
+     */
+    public StaticRouter(AssetBundle bundle) {
+        this.bundle = bundle;
+    }
+
+    /**
+     * Adds a filter run around every request. Filters run in the order they
+     * were added.
+     *
+     * @param filter the filter
+     * @throws IllegalStateException if the router has been frozen
+     */
+    public void use(Filter filter) {
+        filters.add(filter);
+    }
+
     /**
-     * Delegates request handling to the default static file responder.
+     * Composes the filter chain. Called by the server on start, or lazily by
+     * the first request.
      */
+    @Override
+    public void freeze() {
+        filters.compile(this::serve);
+    }
+
     @Override
     public HttpResponse resolve(Request request, File webRoot) {
+        if (!filters.isCompiled()) {
+            freeze();
+        }
+        return filters.resolve(request, webRoot);
+    }
+
+    /**
+     * Serves the request from the bundle when it holds the path, otherwise
+     * delegates to the default static file responder.
+     */
+    private HttpResponse serve(Request request, File webRoot) {
+        if (bundle != null) {
+            AssetBundle.Asset asset = bundle.resolve(request.path);
+            if (asset != null) {
+                return new HttpResponse(request, asset.identity(), asset.gzip());
+            }
+        }
         return new HttpResponse(request, webRoot);
     }
 }
@@ -0,0 +1,176 @@
+package com.hindbiswas.server.routing;
+
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.Response;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * VirtualHostRouter: Serves several sites from one server, selecting a router
+ * and web root by the request's {@code Host} header.
+ *
+ * <p>
+ * Hosts are matched exactly ({@code example.com}) or by wildcard
+ * ({@code *.example.com}, matching any subdomain, longest suffix first).
+ * Requests for other hosts, or without a {@code Host} header, go to the
+ * default router with the server's web root, or get a 404 if there is none.
+ * Each host's web root gets its own JHP engine and shares the server's
+ * thread pool, sessions and static file cache.
+ * </p>
+ *
+ * <pre>{@code
+ * VirtualHostRouter hosts = new VirtualHostRouter()
+ *         .addHost("example.com", "./sites/example", exampleRouter)
+ *         .addHost("*.example.org", "./sites/org", new StaticRouter())
+ *         .setDefaultRouter(new StaticRouter());
+ * server.setRouter(hosts);
+ * }</pre>
+ */
+public class VirtualHostRouter implements Router {
+
+    /**
+     * A site served by the router.
+     *
+     * @param pattern the host name or {@code *.}-wildcard, lower case
+     * @param webRoot the site's web root
+     * @param router  the site's router
+     */
+    public record Host(String pattern, File webRoot, Router router) {
+    }
+
+    private final Map<String, Host> exact = new HashMap<>();
+    /** Wildcard hosts keyed by suffix including the dot, longest first */
+    private final List<Map.Entry<String, Host>> wildcards = new ArrayList<>();
+    private Router defaultRouter;
+    private volatile boolean frozen = false;
+
+    /**
+     * Adds a site.
+     *
+     * @param pattern the host name, e.g. {@code example.com}, or a wildcard
+     *                such as {@code *.example.com}
+     * @param webRoot the site's web root directory
+     * @param router  the site's router, or null to serve static files only
+     * @return this router for chaining
+     * @throws IllegalArgumentException if the web root is not a directory
+     * @throws IllegalStateException    if the router has been frozen
+     */
+    public synchronized VirtualHostRouter addHost(String pattern, String webRoot, Router router) {
+        if (frozen) {
+            throw new IllegalStateException("Cannot add hosts after the router has been frozen.");
+        }
+        File root = new File(webRoot);
+        if (!root.isDirectory()) {
+            throw new IllegalArgumentException("Invalid web root directory: " + webRoot);
+        }
+
+        String name = pattern.trim().toLowerCase(Locale.ROOT);
+        Host host = new Host(name, root, (router != null) ? router : new StaticRouter());
+        if (name.startsWith("*.")) {
+            wildcards.removeIf(entry -> entry.getKey().equals(name.substring(1)));
+            wildcards.add(Map.entry(name.substring(1), host));
+            wildcards.sort((a, b) -> Integer.compare(b.getKey().length(), a.getKey().length()));
+        } else {
+            exact.put(name, host);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the router for requests that match no host. It serves from the
+     * server's web root.
+     *
+     * @param router the router, or null to answer unknown hosts with 404
+     * @return this router for chaining
+     */
+    public synchronized VirtualHostRouter setDefaultRouter(Router router) {
+        if (frozen) {
+            throw new IllegalStateException("Cannot change the default router after the router has been frozen.");
+        }
+        this.defaultRouter = router;
+        return this;
+    }
+
+    /**
+     * Finds the site for a {@code Host} header value.
+     *
+     * @param hostHeader the header value, possibly with a port
+     * @return the site, or null if none matches
+     */
+    public Host match(String hostHeader) {
+        if (hostHeader == null || hostHeader.isEmpty()) {
+            return null;
+        }
+        String name = hostHeader;
+        int colon = name.lastIndexOf(':');
+        if (colon > name.lastIndexOf(']')) {
+            name = name.substring(0, colon); // Strip the port, keeping IPv6 literals intact
+        }
+        if (name.endsWith(".")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        name = name.toLowerCase(Locale.ROOT);
+
+        Host host = exact.get(name);
+        if (host != null) {
+            return host;
+        }
+        for (Map.Entry<String, Host> wildcard : wildcards) {
+            if (name.endsWith(wildcard.getKey()) && name.length() > wildcard.getKey().length()) {
+                return wildcard.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public HttpResponse resolve(Request request, File webRoot) {
+        Host host = match(request.getHeader("host"));
+        if (host != null) {
+            return host.router().resolve(request, host.webRoot());
+        }
+        if (defaultRouter != null) {
+            return defaultRouter.resolve(request, webRoot);
+        }
+        return Response.error(404).toHttpResponse();
+    }
+
+    @Override
+    public synchronized void freeze() {
+        frozen = true;
+        for (Host host : getHosts()) {
+            host.router().freeze();
+        }
+        if (defaultRouter != null) {
+            defaultRouter.freeze();
+        }
+    }
+
+    @Override
+    public Set<File> getWebRoots() {
+        Set<File> roots = new LinkedHashSet<>();
+        for (Host host : getHosts()) {
+            roots.add(host.webRoot());
+        }
+        return roots;
+    }
+
+    /**
+     * Returns every site, exact hosts first.
+     */
+    public synchronized List<Host> getHosts() {
+        List<Host> hosts = new ArrayList<>(exact.values());
+        for (Map.Entry<String, Host> wildcard : wildcards) {
+            hosts.add(wildcard.getValue());
+        }
+        return hosts;
+    }
+}
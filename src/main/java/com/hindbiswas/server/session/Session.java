@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.hindbiswas.server.http.RequestContext;
 import com.hindbiswas.server.util.RandomUtils;
 
 public class Session implements Serializable {
@@ -30,6 +31,11 @@ public class Session implements Serializable {
     }
 
     public static Session getSession(String id) {
+        // The request being handled usually holds the session asked for
+        RequestContext context = RequestContext.current();
+        if (context != null && context.getSession() != null && context.getSession().getId().equals(id)) {
+            return context.getSession();
+        }
         SessionManager manager = SessionManager.getInstance(id).orElse(null);
         if (manager == null) {
             return null;
@@ -3,7 +3,7 @@ package com.hindbiswas.server.util;
 import java.util.Deque;
 import java.util.Map;
 
-import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestContext;
 import com.hindbiswas.server.session.Session;
 
 /**
@@ -78,85 +78,58 @@ public class SessionUtils {
     // Implementation instances
 
     public static final SessionGet sessionGet = (key, scopes) -> {
-        Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        if (sessionProxy == null)
-            return null;
-
-        @SuppressWarnings("unchecked")
-        Map<String, Object> attributes = (Map<String, Object>) sessionProxy.get("_attributes");
-        if (attributes == null)
-            return null;
-
-        return attributes.get(key);
+        Session session = currentSession(scopes);
+        return (session != null) ? session.get(key) : null;
     };
 
     public static final SessionSet sessionSet = (key, value, scopes) -> {
-        Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        if (sessionProxy == null)
-            return;
-
-        String sessId = sessionProxy.get("__id") == null ? null : sessionProxy.get("__id").toString();
-        if (sessId == null)
-            return;
-
-        Session session = Session.getSession(sessId);
+        Session session = currentSession(scopes);
         if (session != null) {
             session.set(key, value);
         }
     };
 
     public static final SessionRemove sessionRemove = (key, scopes) -> {
-        Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        if (sessionProxy == null)
-            return;
-
-        String sessId = sessionProxy.get("__id") == null ? null : sessionProxy.get("__id").toString();
-        if (sessId == null)
-            return;
-
-        Session session = Session.getSession(sessId);
+        Session session = currentSession(scopes);
         if (session != null) {
             session.remove(key);
         }
     };
 
     public static final SessionExists sessionExists = (key, scopes) -> {
-        Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        if (sessionProxy == null)
-            return false;
-
-        @SuppressWarnings("unchecked")
-        Map<String, Object> attributes = (Map<String, Object>) sessionProxy.get("_attributes");
-        if (attributes == null)
-            return false;
-
-        return attributes.containsKey(key);
+        Session session = currentSession(scopes);
+        return session != null && session.exists(key);
     };
 
     public static final SessionInvalidate sessionInvalidate = (scopes) -> {
-        Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        if (sessionProxy == null)
-            return;
-
-        String sessId = sessionProxy.get("__id") == null ? null : sessionProxy.get("__id").toString();
-        Session session = Session.getSession(sessId);
+        Session session = currentSession(scopes);
         if (session != null) {
             session.invalidate();
         }
     };
 
     public static final SessionId sessionId = (scopes) -> {
-        Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        if (sessionProxy == null)
-            return null;
-
-        return (String) sessionProxy.get("_id");
+        Session session = currentSession(scopes);
+        return (session != null) ? session.getId() : null;
     };
 
-    public static final SessionActive sessionActive = (scopes) -> {
+    public static final SessionActive sessionActive = (scopes) -> currentSession(scopes) != null;
+
+    /**
+     * Gets the session of the request being rendered: from the bound
+     * {@link RequestContext} if there is one, otherwise through the session
+     * proxy in the JHP scopes (e.g. for renders outside request handling).
+     */
+    private static Session currentSession(Deque<Map<String, Object>> scopes) {
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            return context.getSession();
+        }
+
         Map<String, Object> sessionProxy = extractSessionProxy(scopes);
-        return sessionProxy != null;
-    };
+        Object sessId = (sessionProxy != null) ? sessionProxy.get("_id") : null;
+        return (sessId != null) ? Session.getSession(sessId.toString()) : null;
+    }
 
     /**
      * Extracts the session proxy Map from JHP scopes.
@@ -0,0 +1,48 @@
+package com.hindbiswas.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.hindbiswas.server.http.ResolvedPath;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for ResolvedPathCache.
+ */
+public class ResolvedPathCacheTest {
+
+    @Test
+    public void keepsForbiddenPathsOutOfTheServableEntries() throws Exception {
+        File root = Files.createTempDirectory("resolved-test").toFile();
+        Files.writeString(new File(root, "a.txt").toPath(), "a");
+        NegativePathCache missing = new NegativePathCache(2, 60_000);
+        ResolvedPathCache cache = new ResolvedPathCache(2, missing);
+
+        assertTrue(cache.resolve("/a.txt", root).exists());
+        for (int i = 0; i < 10; i++) {
+            ResolvedPath forbidden = cache.resolve("/../x" + i, root);
+            assertFalse(forbidden.underWebRoot());
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(2, missing.size());
+        long hits = cache.getHits();
+        assertTrue(cache.resolve("/a.txt", root).exists());
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @Test
+    public void resolvesForbiddenPathsEachTimeWithoutNegativeCache() throws Exception {
+        File root = Files.createTempDirectory("resolved-test").toFile();
+        ResolvedPathCache cache = new ResolvedPathCache(8);
+
+        assertFalse(cache.resolve("/../etc/passwd", root).underWebRoot());
+        assertFalse(cache.resolve("/../etc/passwd", root).underWebRoot());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,90 @@
+package com.hindbiswas.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.RequestCancelledException;
+import com.hindbiswas.server.http.Response;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for RouteCache keys and request coalescing.
+ */
+public class RouteCacheTest {
+
+    private static Request get(String path) {
+        return new Request("GET", path, "HTTP/1.1", new HashMap<>(), null);
+    }
+
+    @Test
+    public void cachesAndCountsHits() {
+        AtomicInteger calls = new AtomicInteger();
+        RouteCache cache = new RouteCache(request -> Response.text("n" + calls.incrementAndGet()),
+                new RouteCacheConfig().setTtlMillis(60_000));
+
+        Response first = cache.handle(get("/a?x=1"));
+        assertSame(first, cache.handle(get("/a?x=1")));
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void keepsQueriesWithEncodedSeparatorsApart() {
+        AtomicInteger calls = new AtomicInteger();
+        RouteCache cache = new RouteCache(request -> Response.text(String.valueOf(request.params)),
+                new RouteCacheConfig().setTtlMillis(60_000));
+
+        Response plain = cache.handle(get("/q?a=1&b=2"));
+        Response encoded = cache.handle(get("/q?a=1%26b%3D2"));
+        Response split = cache.handle(get("/q?a%3D1=2"));
+
+        assertNotSame(plain, encoded);
+        assertNotSame(plain, split);
+        assertNotSame(encoded, split);
+        assertEquals(0, cache.getHits());
+        assertSame(encoded, cache.handle(get("/q?a=1%26b%3D2")));
+    }
+
+    @Test
+    public void waitersRetryWhenTheLeadersRequestIsCancelled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RouteCache[] holder = new RouteCache[1];
+        RouteCache cache = new RouteCache(request -> {
+            if (calls.incrementAndGet() == 1) {
+                // Wait for the other request to join this call, then fail as cancelled
+                long until = System.currentTimeMillis() + 5000;
+                while (holder[0].getCoalesced() == 0 && System.currentTimeMillis() < until) {
+                    Thread.onSpinWait();
+                }
+                throw new RequestCancelledException("Client disconnected", false);
+            }
+            return Response.text("fresh");
+        }, new RouteCacheConfig().setTtlMillis(60_000));
+        holder[0] = cache;
+
+        CompletableFuture<Void> leader = CompletableFuture.runAsync(() -> {
+            try {
+                cache.handle(get("/slow"));
+            } catch (RequestCancelledException expected) {
+                // The leader's own request was cancelled
+            }
+        });
+        while (calls.get() == 0) {
+            Thread.onSpinWait();
+        }
+
+        Response waiter = cache.handle(get("/slow"));
+        leader.get(5, TimeUnit.SECONDS);
+
+        assertEquals(200, waiter.getStatusCode());
+        assertEquals(2, calls.get());
+    }
+}
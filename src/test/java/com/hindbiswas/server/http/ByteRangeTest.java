@@ -0,0 +1,76 @@
+package com.hindbiswas.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for parsing Range headers.
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void parsesSimpleAndOpenRanges() {
+        assertEquals(List.of(new ByteRange(0, 499)), ByteRange.parse("bytes=0-499", 1000));
+        assertEquals(List.of(new ByteRange(500, 999)), ByteRange.parse("bytes=500-", 1000));
+        assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=900-5000", 1000));
+        assertEquals(List.of(new ByteRange(0, 0)), ByteRange.parse("BYTES=0-0", 1000));
+    }
+
+    @Test
+    public void parsesSuffixRanges() {
+        assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=-100", 1000));
+        assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse("bytes=-5000", 1000));
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-10", 0).isEmpty());
+    }
+
+    @Test
+    public void reportsUnsatisfiableRangesAsEmpty() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=1000-2000,5000-6000", 1000).isEmpty());
+        assertEquals(List.of(new ByteRange(0, 9)), ByteRange.parse("bytes=2000-3000,0-9", 1000));
+    }
+
+    @Test
+    public void coalescesOverlappingRanges() {
+        assertEquals(List.of(new ByteRange(0, 199)), ByteRange.parse("bytes=0-99,50-199", 1000));
+        assertEquals(List.of(new ByteRange(0, 199)), ByteRange.parse("bytes=100-199,0-99", 1000));
+        assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse("bytes=0-0,0-0,0-,-1", 1000));
+        assertEquals(List.of(new ByteRange(500, 599), new ByteRange(0, 99)),
+                ByteRange.parse("bytes=500-599,0-99", 1000));
+    }
+
+    @Test
+    public void clampsOverflowingPositions() {
+        assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse("bytes=0-99999999999999999999", 1000));
+        assertTrue(ByteRange.parse("bytes=99999999999999999999-", 1000).isEmpty());
+        assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse("bytes=-99999999999999999999", 1000));
+    }
+
+    @Test
+    public void ignoresMalformedHeaders() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=5", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+        assertNull(ByteRange.parse("bytes=--5", 1000));
+        assertNull(ByteRange.parse("bytes=+1-2", 1000));
+        assertNull(ByteRange.parse("bytes=0x10-20", 1000));
+    }
+
+    @Test
+    public void ignoresTooManyRanges() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i <= ByteRange.MAX_RANGES; i++) {
+            header.append(i * 10).append('-').append(i * 10 + 1).append(',');
+        }
+        header.setLength(header.length() - 1);
+        assertNull(ByteRange.parse(header.toString(), 1000));
+    }
+}
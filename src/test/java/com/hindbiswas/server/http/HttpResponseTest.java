@@ -0,0 +1,73 @@
+package com.hindbiswas.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.hindbiswas.server.cache.StaticCacheConfig;
+import com.hindbiswas.server.cache.StaticFileCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for writing response heads.
+ */
+public class HttpResponseTest {
+
+    @After
+    public void tearDown() {
+        StaticFileCache.configure(null);
+    }
+
+    private static String head(HttpResponse response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.writeHead(out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static int count(String head, String name) {
+        int count = 0;
+        for (String line : head.split("\r\n")) {
+            if (line.regionMatches(true, 0, name + ":", 0, name.length() + 1)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void skipsHeadersAlreadyPreEncoded() throws Exception {
+        File root = Files.createTempDirectory("response-test").toFile();
+        Files.writeString(new File(root, "a.txt").toPath(), "hello");
+        StaticFileCache.configure(new StaticCacheConfig());
+
+        HttpResponse response = new HttpResponse(new Request("GET", "/a.txt", "HTTP/1.1", new HashMap<>(), null),
+                root);
+        response.setHeader("Content-Type", "text/csv");
+        response.setHeader("etag", "\"other\"");
+        response.setHeader("X-Frame-Options", "DENY");
+        String head = head(response);
+
+        assertEquals(1, count(head, "Content-Type"));
+        assertEquals(1, count(head, "Content-Length"));
+        assertEquals(1, count(head, "ETag"));
+        assertTrue(head.contains("X-Frame-Options: DENY\r\n"));
+        assertTrue(head.endsWith("\r\n\r\n"));
+    }
+
+    @Test
+    public void writesOverriddenHeadersOnce() throws Exception {
+        HttpResponse response = new HttpResponse(200, "OK", "x".getBytes(StandardCharsets.UTF_8), "text/plain");
+        response.setHeader("Content-Type", "text/csv");
+        String head = head(response);
+
+        assertEquals(1, count(head, "Content-Type"));
+        assertTrue(head.contains("Content-Type: text/csv\r\n"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.hindbiswas.server.http;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for conditional range requests.
+ */
+public class HttpUtilsTest {
+
+    private static Request withIfRange(String value) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("if-range", value);
+        return new Request("GET", "/file", "HTTP/1.1", headers, null);
+    }
+
+    @Test
+    public void appliesRangeWithoutIfRange() {
+        Request request = new Request("GET", "/file", "HTTP/1.1", new HashMap<>(), null);
+        assertTrue(HttpUtils.isRangeApplicable(request, "\"a-1\"", System.currentTimeMillis()));
+    }
+
+    @Test
+    public void comparesEntityTagsStrongly() {
+        assertTrue(HttpUtils.isRangeApplicable(withIfRange("\"a-1\""), "\"a-1\"", 0));
+        assertFalse(HttpUtils.isRangeApplicable(withIfRange("\"a-2\""), "\"a-1\"", 0));
+        assertFalse(HttpUtils.isRangeApplicable(withIfRange("W/\"a-1\""), "\"a-1\"", 0));
+    }
+
+    @Test
+    public void acceptsMatchingOldDates() {
+        long lastModified = System.currentTimeMillis() - 60_000;
+        String date = HttpUtils.formatHttpDate(lastModified);
+        assertTrue(HttpUtils.isRangeApplicable(withIfRange(date), "\"a-1\"", lastModified));
+        assertFalse(HttpUtils.isRangeApplicable(withIfRange(HttpUtils.formatHttpDate(lastModified - 5_000)),
+                "\"a-1\"", lastModified));
+    }
+
+    @Test
+    public void rejectsDatesOfJustModifiedFiles() {
+        long lastModified = System.currentTimeMillis();
+        String date = HttpUtils.formatHttpDate(lastModified);
+        assertFalse(HttpUtils.isRangeApplicable(withIfRange(date), "\"a-1\"", lastModified));
+        assertFalse(HttpUtils.isRangeApplicable(withIfRange(date), "\"a-1\"", lastModified + 60_000));
+    }
+
+    @Test
+    public void rejectsUnparseableDates() {
+        long lastModified = System.currentTimeMillis() - 60_000;
+        assertFalse(HttpUtils.isRangeApplicable(withIfRange("yesterday"), "\"a-1\"", lastModified));
+    }
+}
@@ -0,0 +1,37 @@
+package com.hindbiswas.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for Response copies.
+ */
+public class ResponseTest {
+
+    @Test
+    public void addsCookieToSynchronousResponse() {
+        Response response = Response.text("hi").withCookie(new Cookie("a", "1"));
+
+        assertFalse(response.isAsync());
+        assertEquals(1, response.getCookies().size());
+    }
+
+    @Test
+    public void keepsAsyncResultWhenAddingCookie() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Response response = Response.async(future).withCookie(new Cookie("a", "1"));
+        assertTrue(response.isAsync());
+
+        future.complete(Response.text("done"));
+        Response result = response.toFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(200, result.getStatusCode());
+        assertEquals("a", result.getCookies().get(0).getName());
+    }
+}
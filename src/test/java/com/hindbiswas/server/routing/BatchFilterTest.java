@@ -0,0 +1,227 @@
+package com.hindbiswas.server.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.hindbiswas.server.http.HttpResponse;
+import com.hindbiswas.server.http.Request;
+import com.hindbiswas.server.http.Response;
+
+/**
+ * Unit tests for BatchFilter: parsing, escaping, ordering and limits.
+ */
+public class BatchFilterTest {
+
+    private static HttpResponse post(BatchFilter filter, String json, Map<String, String> headers, Router next) {
+        Map<String, String> body = new HashMap<>();
+        body.put("raw", json);
+        Request request = new Request("POST", "/api/batch", "HTTP/1.1", headers, body);
+        return filter.filter(request, null, next);
+    }
+
+    private static HttpResponse post(BatchFilter filter, String json, Router next) {
+        return post(filter, json, new HashMap<>(), next);
+    }
+
+    private static String body(HttpResponse response) {
+        return new String(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    private static final Router ECHO_PATH = (request, webRoot) -> Response.text(request.path).toHttpResponse();
+
+    @Test
+    public void passesOtherPathsThrough() {
+        Request request = new Request("GET", "/other", "HTTP/1.1", new HashMap<>(), null);
+        HttpResponse response = new BatchFilter("/api/batch").filter(request, null, ECHO_PATH);
+        assertEquals("/other", body(response));
+    }
+
+    @Test
+    public void rejectsMethodsOtherThanPost() {
+        Request request = new Request("GET", "/api/batch", "HTTP/1.1", new HashMap<>(), null);
+        HttpResponse response = new BatchFilter("/api/batch").filter(request, null, ECHO_PATH);
+        assertEquals(405, response.getStatusCode());
+        assertEquals("POST", response.getHeader("Allow"));
+    }
+
+    @Test
+    public void answersInOrder() {
+        HttpResponse response = post(new BatchFilter("/api/batch"),
+                "[{\"path\": \"/a\"}, {\"method\": \"POST\", \"path\": \"/b\"}, {\"path\": \"/c\"}]", ECHO_PATH);
+        assertEquals(200, response.getStatusCode());
+        String json = body(response);
+        assertTrue(json, json.indexOf("\"/a\"") < json.indexOf("\"/b\""));
+        assertTrue(json, json.indexOf("\"/b\"") < json.indexOf("\"/c\""));
+    }
+
+    @Test
+    public void rejectsMalformedJson() {
+        String[] invalid = {
+                "",
+                "[{\"path\": \"/a\"}",
+                "[{\"path\": \"/a\"}] trailing",
+                "{\"path\": \"/a\"}",
+                "[{\"path\": \"/a\",}]",
+                "[{\"path\": \"/a\", \"body\": {\"n\": 01}}]",
+                "[{\"path\": \"/a\", \"body\": {\"s\": \"bad \\x escape\"}}]",
+                "[{\"path\": \"/a\", \"body\": {\"s\": \"\\u12\"}}]",
+                "[{\"path\": \"unterminated}]",
+                "[tru]",
+        };
+        for (String json : invalid) {
+            HttpResponse response = post(new BatchFilter("/api/batch"), json, ECHO_PATH);
+            assertEquals(json, 400, response.getStatusCode());
+            assertTrue(json, body(response).contains("\"error\""));
+        }
+    }
+
+    @Test
+    public void rejectsEntriesWithoutAbsolutePath() {
+        String[] invalid = {
+                "[{\"method\": \"GET\"}]",
+                "[{\"path\": 3}]",
+                "[{\"path\": \"relative\"}]",
+                "[\"/a\"]",
+                "[{\"path\": \"/a\", \"body\": [1]}]",
+        };
+        for (String json : invalid) {
+            assertEquals(json, 400, post(new BatchFilter("/api/batch"), json, ECHO_PATH).getStatusCode());
+        }
+    }
+
+    @Test
+    public void decodesEscapesInBodies() {
+        List<String> titles = Collections.synchronizedList(new ArrayList<>());
+        Router next = (request, webRoot) -> {
+            titles.add(request.body.get("title"));
+            return Response.text(request.body.get("title")).toHttpResponse();
+        };
+        HttpResponse response = post(new BatchFilter("/api/batch"),
+                "[{\"method\": \"POST\", \"path\": \"/t\", \"body\": {\"title\": \"q\\\"b\\\\s\\/\\u00e9\\n\\t\"}}]",
+                next);
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals(List.of("q\"b\\s/\u00e9\n\t"), titles);
+        assertTrue(body(response), body(response).contains("\"body\": \"q\\\"b\\\\s/\u00e9\\n\\t\""));
+    }
+
+    @Test
+    public void splicesValidJsonAndQuotesInvalidJson() {
+        Router next = (request, webRoot) -> Response
+                .json(request.path.equals("/good") ? "{\"ok\": [1, 2.5e3, true, null]}" : "{broken")
+                .toHttpResponse();
+        String json = body(post(new BatchFilter("/api/batch"), "[{\"path\": \"/good\"}, {\"path\": \"/bad\"}]", next));
+
+        assertTrue(json, json.contains("\"body\": {\"ok\": [1, 2.5e3, true, null]}"));
+        assertTrue(json, json.contains("\"body\": \"{broken\""));
+    }
+
+    @Test
+    public void rejectsBatchesOverTheLimit() {
+        BatchFilter filter = new BatchFilter("/api/batch").setMaxRequests(2);
+        assertEquals(200, post(filter, "[{\"path\": \"/a\"}, {\"path\": \"/b\"}]", ECHO_PATH).getStatusCode());
+        assertEquals(413,
+                post(filter, "[{\"path\": \"/a\"}, {\"path\": \"/b\"}, {\"path\": \"/c\"}]", ECHO_PATH).getStatusCode());
+    }
+
+    @Test
+    public void rejectsNestedBatches() {
+        AtomicInteger calls = new AtomicInteger();
+        Router next = (request, webRoot) -> {
+            calls.incrementAndGet();
+            return Response.text("ok").toHttpResponse();
+        };
+        String json = body(post(new BatchFilter("/api/batch"),
+                "[{\"method\": \"POST\", \"path\": \"/api/batch\"}, {\"path\": \"/a\"}]", next));
+
+        assertTrue(json, json.startsWith("[{\"status\": 400"));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void runsSafeCallsTogetherAndUnsafeCallsAlone() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        Router next = (request, webRoot) -> {
+            int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+            events.add("start " + request.path);
+            if (request.method.equals("POST")) {
+                assertEquals("unsafe call must run alone", 1, now);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add("end " + request.path);
+            active.decrementAndGet();
+            return Response.text("ok").toHttpResponse();
+        };
+
+        HttpResponse response = post(new BatchFilter("/api/batch"),
+                "[{\"path\": \"/a\"}, {\"path\": \"/b\"}, {\"method\": \"POST\", \"path\": \"/c\"}, {\"path\": \"/d\"}]",
+                next);
+
+        assertFalse(body(response), body(response).contains("\"status\": 500"));
+        assertEquals(2, maxActive.get());
+        assertTrue(events.toString(), events.indexOf("end /a") < events.indexOf("start /c"));
+        assertTrue(events.toString(), events.indexOf("end /b") < events.indexOf("start /c"));
+        assertTrue(events.toString(), events.indexOf("end /c") < events.indexOf("start /d"));
+    }
+
+    @Test
+    public void runsEverythingInOrderWhenNotParallel() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        Router next = (request, webRoot) -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            active.decrementAndGet();
+            return Response.text("ok").toHttpResponse();
+        };
+        post(new BatchFilter("/api/batch").setParallel(false), "[{\"path\": \"/a\"}, {\"path\": \"/b\"}]", next);
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void doesNotInheritEncodingOrConditionalHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("cookie", "JSESSIONID=abc");
+        headers.put("accept-encoding", "gzip");
+        headers.put("range", "bytes=0-1");
+        headers.put("if-none-match", "\"x\"");
+        headers.put("if-modified-since", "Thu, 01 Jan 1970 00:00:00 GMT");
+        headers.put("if-range", "\"x\"");
+        List<Request> seen = Collections.synchronizedList(new ArrayList<>());
+        Router next = (request, webRoot) -> {
+            seen.add(request);
+            return Response.text("ok").toHttpResponse();
+        };
+
+        post(new BatchFilter("/api/batch"),
+                "[{\"path\": \"/a\"}, {\"path\": \"/b\", \"headers\": {\"Accept-Encoding\": \"br\"}}]", headers, next);
+
+        Request plain = seen.get(0).path.equals("/a") ? seen.get(0) : seen.get(1);
+        Request explicit = (plain == seen.get(0)) ? seen.get(1) : seen.get(0);
+        assertEquals("JSESSIONID=abc", plain.getHeader("cookie"));
+        assertNull(plain.getHeader("accept-encoding"));
+        assertNull(plain.getHeader("range"));
+        assertNull(plain.getHeader("if-none-match"));
+        assertNull(plain.getHeader("if-modified-since"));
+        assertNull(plain.getHeader("if-range"));
+        assertEquals("br", explicit.getHeader("accept-encoding"));
+    }
+}
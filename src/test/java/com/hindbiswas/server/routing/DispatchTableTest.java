@@ -0,0 +1,78 @@
+package com.hindbiswas.server.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.hindbiswas.server.handler.RouteHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the Allow values DispatchTable precomputes.
+ */
+public class DispatchTableTest {
+
+    private static final RouteHandler HANDLER = request -> null;
+
+    private static DispatchTable compile(String... methodsAndPatterns) {
+        Map<String, RouteTree<RouteHandler>> routes = new HashMap<>();
+        for (int i = 0; i < methodsAndPatterns.length; i += 2) {
+            routes.computeIfAbsent(methodsAndPatterns[i], k -> new RouteTree<>())
+                    .insert(methodsAndPatterns[i + 1], HANDLER);
+        }
+        return DispatchTable.compile(routes);
+    }
+
+    @Test
+    public void listsMethodsOfTheSameShape() {
+        DispatchTable table = compile(
+                "GET", "/items/{id:int}",
+                "DELETE", "/items/{key:int}",
+                "POST", "/items");
+
+        assertEquals("GET, HEAD, DELETE, OPTIONS", table.allowed("/items/5"));
+        assertEquals("POST, OPTIONS", table.allowed("/items"));
+        assertNull(table.allowed("/items/abc"));
+        assertNull(table.allowed("/other"));
+    }
+
+    @Test
+    public void includesShapesCoveringTheMatchedOne() {
+        DispatchTable table = compile(
+                "GET", "/items/{id:int}",
+                "PUT", "/items/{id:long}",
+                "DELETE", "/items/{name}",
+                "PATCH", "/items/*");
+
+        assertEquals("GET, HEAD, PUT, PATCH, DELETE, OPTIONS", table.allowed("/items/5"));
+        assertEquals("PUT, PATCH, DELETE, OPTIONS", table.allowed("/items/5000000000"));
+        assertEquals("PATCH, DELETE, OPTIONS", table.allowed("/items/abc"));
+        assertEquals("PATCH, OPTIONS", table.allowed("/items/a/b"));
+        assertEquals("PATCH, OPTIONS", table.allowed("/items/"));
+    }
+
+    @Test
+    public void walksTreesForPartlyOverlappingShapes() {
+        DispatchTable table = compile(
+                "GET", "/a/{x}/b",
+                "POST", "/a/b/{y}");
+
+        assertEquals("GET, HEAD, POST, OPTIONS", table.allowed("/a/b/b"));
+        assertEquals("GET, HEAD, OPTIONS", table.allowed("/a/c/b"));
+        assertEquals("POST, OPTIONS", table.allowed("/a/b/c"));
+        assertNull(table.allowed("/a/c/c"));
+    }
+
+    @Test
+    public void keepsLiteralPathsExact() {
+        DispatchTable table = compile(
+                "GET", "/items/new",
+                "DELETE", "/items/{id}");
+
+        assertEquals("GET, HEAD, DELETE, OPTIONS", table.allowed("/items/new"));
+        assertEquals("DELETE, OPTIONS", table.allowed("/items/old"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.hindbiswas.server.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for RouteTree matching, priorities and parameter decoding.
+ */
+public class RouteTreeTest {
+
+    private static String match(RouteTree<String> tree, String path) {
+        RouteTree.Route<String> route = tree.match(path, new String[Math.max(1, tree.getMaxParams())]);
+        return (route != null) ? route.value() : null;
+    }
+
+    private static String capture(RouteTree<String> tree, String path) {
+        String[] values = new String[Math.max(1, tree.getMaxParams())];
+        tree.match(path, values);
+        return values[0];
+    }
+
+    @Test
+    public void prefersLiteralThenTypedThenStringThenWildcard() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/items/*", "wildcard");
+        tree.insert("/items/{name}", "string");
+        tree.insert("/items/{id:int}", "int");
+        tree.insert("/items/new", "literal");
+
+        assertEquals("literal", match(tree, "/items/new"));
+        assertEquals("int", match(tree, "/items/42"));
+        assertEquals("string", match(tree, "/items/abc"));
+        assertEquals("wildcard", match(tree, "/items/a/b"));
+    }
+
+    @Test
+    public void backtracksWhenSpecificBranchFailsDeeper() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/users/me/settings", "literal");
+        tree.insert("/users/{id:int}/posts", "typed");
+        tree.insert("/users/{name}/profile", "string");
+        tree.insert("/users/*rest", "wildcard");
+
+        assertEquals("literal", match(tree, "/users/me/settings"));
+        assertEquals("string", match(tree, "/users/me/profile"));
+        assertEquals("typed", match(tree, "/users/7/posts"));
+        assertEquals("string", match(tree, "/users/7/profile"));
+        assertEquals("wildcard", match(tree, "/users/7/other"));
+        assertEquals("7/other", capture(tree, "/users/7/other"));
+    }
+
+    @Test
+    public void rejectsOutOfRangeIntegers() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/i/{n:int}", "int");
+        tree.insert("/l/{n:long}", "long");
+
+        assertEquals("int", match(tree, "/i/2147483647"));
+        assertEquals("int", match(tree, "/i/-2147483648"));
+        assertNull(match(tree, "/i/2147483648"));
+        assertNull(match(tree, "/i/-2147483649"));
+        assertNull(match(tree, "/i/99999999999"));
+        assertNull(match(tree, "/i/-"));
+        assertNull(match(tree, "/i/1a"));
+
+        assertEquals("long", match(tree, "/l/9223372036854775807"));
+        assertEquals("long", match(tree, "/l/-9223372036854775808"));
+        assertNull(match(tree, "/l/9223372036854775808"));
+        assertNull(match(tree, "/l/99999999999999999999"));
+    }
+
+    @Test
+    public void matchesUuids() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/u/{id:uuid}", "uuid");
+
+        assertEquals("uuid", match(tree, "/u/123e4567-e89b-12d3-a456-426614174000"));
+        assertEquals("uuid", match(tree, "/u/123E4567-E89B-12D3-A456-426614174000"));
+        assertNull(match(tree, "/u/123e4567e89b12d3a456426614174000"));
+        assertNull(match(tree, "/u/123e4567-e89b-12d3-a456-42661417400g"));
+        assertNull(match(tree, "/u/123e4567-e89b-12d3-a456-4266141740000"));
+    }
+
+    @Test
+    public void splitsEdgesSharingPrefixes() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/api/todos", "todos");
+        tree.insert("/api/tags", "tags");
+        tree.insert("/api/t", "t");
+        tree.insert("/api", "api");
+        tree.insert("/apis", "apis");
+
+        assertEquals("todos", match(tree, "/api/todos"));
+        assertEquals("tags", match(tree, "/api/tags"));
+        assertEquals("t", match(tree, "/api/t"));
+        assertEquals("api", match(tree, "/api"));
+        assertEquals("apis", match(tree, "/apis"));
+        assertNull(match(tree, "/api/"));
+        assertNull(match(tree, "/api/ta"));
+        assertNull(match(tree, "/api/todosx"));
+    }
+
+    @Test
+    public void replacesRoutesWithTheSameShape() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/a/{x}", "first");
+        tree.insert("/a/{y}", "second");
+
+        assertEquals("second", match(tree, "/a/1"));
+        assertEquals(1, tree.getRoutes().size());
+    }
+
+    @Test
+    public void percentDecodesWithoutFormDecoding() {
+        RouteTree<String> tree = new RouteTree<>();
+        tree.insert("/files/{name}", "file");
+
+        assertEquals("a+b c", capture(tree, "/files/a+b%20c"));
+        assertEquals("a+b", capture(tree, "/files/a+b"));
+        assertEquals("été", capture(tree, "/files/%C3%A9t%C3%A9"));
+        assertEquals("100%", capture(tree, "/files/100%25"));
+        assertEquals("bad%2", capture(tree, "/files/bad%2"));
+        assertEquals("bad%zz", capture(tree, "/files/bad%zz"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPartialSegmentParameters() {
+        new RouteTree<String>().insert("/a/{id}x", "bad");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownParameterTypes() {
+        new RouteTree<String>().insert("/a/{id:float}", "bad");
+    }
+}